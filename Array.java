@@ -0,0 +1,175 @@
+@SuppressWarnings("unchecked")
+public class Array<T> implements Iterable<T> {
+    private T[] arr;
+    private int len = 0; // length user thinks array is
+    private int capacity = 0; // actual array size
+
+    // Some VMs reserve header words in an array
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    // Whether removals shrink the backing array, see setShrinkOnRemove
+    private boolean shrinkOnRemove = false;
+    private static final int MIN_SHRINK_CAPACITY = 16;
+
+    public Array() {
+        this(16);
+    }
+
+    public Array(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Illegal Capacity: " + capacity);
+        this.capacity = capacity;
+        arr = (T[]) new Object[capacity];
+    }
+
+    public int size() {
+        return len;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public T get(int index) {
+        if (index < 0 || index >= len) throw new IndexOutOfBoundsException();
+        return arr[index];
+    }
+
+    public void set(int index, T elem) {
+        if (index < 0 || index >= len) throw new IndexOutOfBoundsException();
+        arr[index] = elem;
+    }
+
+    public void clear() {
+        for (int i = 0; i < len; i++) {
+            arr[i] = null;
+        }
+        len = 0;
+    }
+
+    public void add(T elem) {
+        // time to resize!
+        if (len == capacity) {
+            ensureCapacity(len + 1);
+        }
+        arr[len++] = elem;
+    }
+
+    // Grows the backing array, by doubling, so that at least
+    // 'minCapacity' elements fit without another resize. The doubling
+    // stops at the largest array size the VM can allocate
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity <= capacity) return;
+        if (minCapacity > MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("Required array size too large: " + minCapacity);
+        }
+        int newCapacity = (int) Math.min(MAX_ARRAY_SIZE, Math.max(minCapacity, 2L * capacity));
+        resize(newCapacity);
+    }
+
+    // Shrinks the backing array to exactly the number of elements
+    public void trimToSize() {
+        if (len < capacity) {
+            resize(len);
+        }
+    }
+
+    // When enabled the backing array is halved whenever a removal leaves it
+    // a quarter full. The quarter/half gap keeps an alternating add/remove at
+    // the boundary from reallocating on every call. Disabled by default.
+    public void setShrinkOnRemove(boolean shrinkOnRemove) {
+        this.shrinkOnRemove = shrinkOnRemove;
+    }
+
+    private void resize(int newCapacity) {
+        T[] new_arr = (T[]) new Object[newCapacity];
+        System.arraycopy(arr, 0, new_arr, 0, len);
+        arr = new_arr; // arr has extra nulls padded
+        capacity = newCapacity;
+    }
+
+    private void maybeShrink() {
+        if (shrinkOnRemove && capacity > MIN_SHRINK_CAPACITY && len <= capacity / 4) {
+            resize(Math.max(MIN_SHRINK_CAPACITY, capacity / 2));
+        }
+    }
+
+    // removes the element at the specified index in this array by
+    // shifting the elements after it one slot to the left, O(n)
+    public T removeAt(int rm_index) {
+        if (rm_index >= len || rm_index < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        T data = arr[rm_index];
+        System.arraycopy(arr, rm_index + 1, arr, rm_index, len - rm_index - 1);
+        arr[--len] = null; // Help the GC
+        maybeShrink();
+        return data;
+    }
+
+    // removes the last element of this array, O(1) amortized
+    public T removeLast() {
+        if (len == 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        T data = arr[--len];
+        arr[len] = null;
+        maybeShrink();
+        return data;
+    }
+
+    // Stack style alias of removeLast
+    public T pop() {
+        return removeLast();
+    }
+
+    public boolean remove(Object obj) {
+        for (int i = 0; i < len; i++) {
+            if (arr[i].equals(obj)) {
+                removeAt(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int indexOf(Object obj) {
+        for (int i = 0; i < len; i++) {
+            if (arr[i].equals(obj)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(Object obj) {
+        return indexOf(obj) != -1;
+    }
+
+    // Iterator is still fast but not as fast as iterative for loop
+    @Override public java.util.Iterator<T> iterator() {
+        return new java.util.Iterator<T>() {
+            int index = 0;
+            
+            public boolean hasNext() {
+                return index < len;
+            }
+
+            public T next() {
+                return arr[index++];
+            }
+        };
+    }
+
+    @Override public String toString() {
+        if (len == 0) {
+            return "[]";
+        } else {
+            StringBuilder sb = new StringBuilder(len).append("[");
+            for (int i = 0; i < len - 1; i++) {
+                sb.append(arr[i] + ", ");
+            }
+            return sb.append(arr[len - 1] + "]").toString();
+        }
+    }
+}
+
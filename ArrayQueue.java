@@ -0,0 +1,124 @@
+// A queue backed by a ring buffer instead of a linked list. The elements live
+// in a power of two sized array between the 'head' and 'tail' counters, which
+// only ever increase and are masked to get an index, so offer and poll are a
+// store and a load with no node to allocate. The buffer doubles when it fills
+// up, unless the queue is bounded in which case offer returns false instead.
+@SuppressWarnings("unchecked")
+public class ArrayQueue<T> implements Iterable<T> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private T[] buffer;
+    private int mask;
+    private int head = 0; // counter of the next element to poll
+    private int tail = 0; // counter of the next free slot
+
+    // The most elements the queue holds, or -1 if it grows without bound
+    private final int bound;
+
+    public ArrayQueue() {
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    public ArrayQueue(int capacity) {
+        this(capacity, false);
+    }
+
+    // With 'bounded' the queue never holds more than 'capacity' elements
+    public ArrayQueue(int capacity, boolean bounded) {
+        if (capacity <= 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        int length = Integer.highestOneBit(capacity - 1) << 1;
+        buffer = (T[]) new Object[Math.max(1, length)];
+        mask = buffer.length - 1;
+        bound = bounded ? capacity : -1;
+    }
+
+    // Return the size of the queue
+    public int size() {
+        return tail - head;
+    }
+
+    // Returns whether or not the queue is empty
+    public boolean isEmpty() {
+        return tail == head;
+    }
+
+    // Peek the element at the front of the queue
+    // The method throws an error if the queue is empty
+    public T peek() {
+        if (isEmpty()) {
+            throw new RuntimeException("Queue Empty");
+        }
+        return buffer[head & mask];
+    }
+
+    // Poll an element from the front of the queue
+    // The method throws an error if the queue is empty
+    public T poll() {
+        if (isEmpty()) {
+            throw new RuntimeException("Queue Empty");
+        }
+        int index = head++ & mask;
+        T elem = buffer[index];
+        buffer[index] = null;
+        return elem;
+    }
+
+    // Adds an element to the back of the queue. Returns false, without
+    // adding it, if the queue is bounded and full
+    public boolean offer(T elem) {
+        int size = tail - head;
+        if (size == bound) {
+            return false;
+        }
+        if (size == buffer.length) {
+            grow();
+        }
+        buffer[tail++ & mask] = elem;
+        return true;
+    }
+
+    // Removes all the elements, keeping the buffer
+    public void clear() {
+        while (head != tail) {
+            buffer[head++ & mask] = null;
+        }
+        head = tail = 0;
+    }
+
+    // Doubles the buffer, unrolling the elements to start at index 0
+    private void grow() {
+        if (buffer.length == MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Queue too large");
+        }
+        T[] newBuffer = (T[]) new Object[buffer.length * 2];
+        int size = size();
+        int first = head & mask;
+        int firstPart = Math.min(size, buffer.length - first);
+        System.arraycopy(buffer, first, newBuffer, 0, firstPart);
+        System.arraycopy(buffer, 0, newBuffer, firstPart, size - firstPart);
+        buffer = newBuffer;
+        mask = buffer.length - 1;
+        head = 0;
+        tail = size;
+    }
+
+    // Return an iterator to allow the user to traverse
+    // through the elements found inside the queue
+    @Override public java.util.Iterator<T> iterator() {
+        return new java.util.Iterator<T>() {
+            int index = head;
+
+            @Override public boolean hasNext() {
+                return index != tail;
+            }
+
+            @Override public T next() {
+                if (index == tail) throw new java.util.NoSuchElementException();
+                return buffer[index++ & mask];
+            }
+        };
+    }
+}
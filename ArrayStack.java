@@ -0,0 +1,95 @@
+// A stack backed by an array instead of a linked list, so push and pop are a
+// store and a load with no node to allocate. The array doubles when it fills
+// up, unless the stack is bounded in which case push returns false instead.
+@SuppressWarnings("unchecked")
+public class ArrayStack<T> implements Iterable<T> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private T[] arr;
+    private int size = 0;
+
+    // The most elements the stack holds, or -1 if it grows without bound
+    private final int bound;
+
+    public ArrayStack() {
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    public ArrayStack(int capacity) {
+        this(capacity, false);
+    }
+
+    // With 'bounded' the stack never holds more than 'capacity' elements
+    public ArrayStack(int capacity, boolean bounded) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        arr = (T[]) new Object[capacity];
+        bound = bounded ? capacity : -1;
+    }
+
+    // Return the number of elements in the stack
+    public int size() {
+        return size;
+    }
+
+    // Check if the stack is empty
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Push an element on the stack. Returns false, without
+    // pushing it, if the stack is bounded and full
+    public boolean push(T elem) {
+        if (size == bound) {
+            return false;
+        }
+        if (size == arr.length) {
+            arr = java.util.Arrays.copyOf(arr, arr.length * 2);
+        }
+        arr[size++] = elem;
+        return true;
+    }
+
+    // Pop an element off the stack
+    // Throws an error if the stack is empty
+    public T pop() {
+        if (isEmpty()) {
+            throw new java.util.EmptyStackException();
+        }
+        T elem = arr[--size];
+        arr[size] = null;
+        return elem;
+    }
+
+    // Peek at the top of the stack without removing an element
+    // Throws an exception if the stack is empty
+    public T peek() {
+        if (isEmpty()) {
+            throw new java.util.EmptyStackException();
+        }
+        return arr[size - 1];
+    }
+
+    // Removes all the elements, keeping the array
+    public void clear() {
+        java.util.Arrays.fill(arr, 0, size, null);
+        size = 0;
+    }
+
+    // Iterates from the bottom of the stack to the top, like Stack
+    @Override public java.util.Iterator<T> iterator() {
+        return new java.util.Iterator<T>() {
+            int index = 0;
+
+            @Override public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override public T next() {
+                if (index >= size) throw new java.util.NoSuchElementException();
+                return arr[index++];
+            }
+        };
+    }
+}
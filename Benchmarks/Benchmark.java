@@ -0,0 +1,283 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// A small dependency free micro-benchmark harness. Each benchmark is run for a
+// number of warmup iterations (to let the JIT settle) followed by a number of
+// measured iterations. Throughput and allocation are measured over the whole
+// measured loop, while latency percentiles come from a separate pass that times
+// a sample of the individual operations with System.nanoTime().
+public class Benchmark {
+    // Upper bound on the number of latency samples kept per benchmark so that
+    // a 100M operation run does not need a 800MB array of timings
+    private static final int MAX_LATENCY_SAMPLES = 1 << 20;
+
+    private static final int DEFAULT_WARMUP_ITERATIONS = 3;
+    private static final int DEFAULT_MEASUREMENT_ITERATIONS = 5;
+
+    // The HotSpot specific thread bean exposes per thread allocation counters,
+    // which is what the gc profiler of JMH reports as the allocation rate
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+
+    // The results of the ops of runRead() are folded into this field after
+    // every loop. It is never read, but since it is volatile the JIT cannot
+    // prove that nobody does, so it cannot drop the reads that feed it
+    private volatile int sink;
+
+    public Benchmark() {
+        this(DEFAULT_WARMUP_ITERATIONS, DEFAULT_MEASUREMENT_ITERATIONS);
+    }
+
+    public Benchmark(int warmupIterations, int measurementIterations) {
+        if (warmupIterations < 0) {
+            throw new IllegalArgumentException("Illegal warmupIterations: " + warmupIterations);
+        }
+        if (measurementIterations <= 0) {
+            throw new IllegalArgumentException("Illegal measurementIterations: " + measurementIterations);
+        }
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+    }
+
+    // An operation whose result is consumed by the harness, see runRead()
+    public interface ReadOp {
+        Object apply(int i);
+    }
+
+    // Runs 'ops' invocations of 'op' per iteration. The 'setup' hook is called
+    // (untimed) before every iteration to rebuild the state the op works on.
+    // The op returns nothing, so it must change some state, otherwise the JIT
+    // is free to eliminate it. Use runRead() for operations that only read
+    public Result run(String name, int ops, Runnable setup, IntConsumer op) {
+        return measure(name, ops, setup, op, null);
+    }
+
+    // Like run(), for operations that only read. The hash codes of the results
+    // are folded into a sink so the reads cannot be eliminated, which makes
+    // them part of what is measured: the op should return a value that is
+    // cheap to hash, like the value it read or a Boolean
+    public Result runRead(String name, int ops, Runnable setup, ReadOp op) {
+        return measure(name, ops, setup, null, op);
+    }
+
+    // Runs 'op' or 'read', whichever is given
+    private Result measure(String name, int ops, Runnable setup, IntConsumer op, ReadOp read) {
+        if (ops <= 0) {
+            throw new IllegalArgumentException("Illegal ops: " + ops);
+        }
+
+        int folded = 0;
+        for (int it = 0; it < warmupIterations; it++) {
+            setup.run();
+            for (int i = 0; i < ops; i++) {
+                folded += step(i, op, read);
+            }
+        }
+
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (int it = 0; it < measurementIterations; it++) {
+            setup.run();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                folded += step(i, op, read);
+            }
+            totalNanos += System.nanoTime() - start;
+            totalBytes += allocatedBytes() - bytesBefore;
+        }
+
+        // Latency pass, only every 'stride'-th operation gets timed
+        int stride = Math.max(1, ops / MAX_LATENCY_SAMPLES);
+        long[] samples = new long[(ops + stride - 1) / stride];
+        int sampleCount = 0;
+        setup.run();
+        for (int i = 0; i < ops; i++) {
+            if (i % stride == 0) {
+                long start = System.nanoTime();
+                folded += step(i, op, read);
+                samples[sampleCount++] = System.nanoTime() - start;
+            } else {
+                folded += step(i, op, read);
+            }
+        }
+        sink = folded;
+        Arrays.sort(samples, 0, sampleCount);
+
+        long totalOps = (long) ops * measurementIterations;
+        return new Result(
+            name,
+            totalOps * 1e9 / Math.max(1, totalNanos),
+            (double) totalBytes / totalOps,
+            totalBytes * 1e9 / Math.max(1, totalNanos),
+            percentile(samples, sampleCount, 0.50),
+            percentile(samples, sampleCount, 0.90),
+            percentile(samples, sampleCount, 0.99),
+            percentile(samples, sampleCount, 0.999)
+        );
+    }
+
+    // The operation of a benchmark run by several threads at once
+    public interface ThreadedOp {
+        void accept(int thread, int i);
+    }
+
+    // Runs 'ops' invocations of 'op' on each of 'threads' threads, released
+    // together once they all started. Throughput counts the operations of all
+    // threads over the wall time until the last one finished and allocation is
+    // summed over the threads. Latency is sampled on thread 0 only.
+    public Result runThreaded(String name, int threads, int ops, Runnable setup, ThreadedOp op) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Illegal threads: " + threads);
+        }
+        if (ops <= 0) {
+            throw new IllegalArgumentException("Illegal ops: " + ops);
+        }
+
+        for (int it = 0; it < warmupIterations; it++) {
+            setup.run();
+            runThreads(threads, ops, op, null);
+        }
+
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (int it = 0; it < measurementIterations; it++) {
+            setup.run();
+            long[] measured = runThreads(threads, ops, op, null);
+            totalNanos += measured[0];
+            totalBytes += measured[1];
+        }
+
+        int stride = Math.max(1, ops / MAX_LATENCY_SAMPLES);
+        long[] samples = new long[(ops + stride - 1) / stride];
+        setup.run();
+        runThreads(threads, ops, op, samples);
+        Arrays.sort(samples);
+
+        long totalOps = (long) ops * threads * measurementIterations;
+        return new Result(
+            name,
+            totalOps * 1e9 / Math.max(1, totalNanos),
+            (double) totalBytes / totalOps,
+            totalBytes * 1e9 / Math.max(1, totalNanos),
+            percentile(samples, samples.length, 0.50),
+            percentile(samples, samples.length, 0.90),
+            percentile(samples, samples.length, 0.99),
+            percentile(samples, samples.length, 0.999)
+        );
+    }
+
+    // Runs one iteration on fresh threads and returns its wall time and the
+    // bytes the threads allocated. When 'samples' is given thread 0 times
+    // every op whose index is a multiple of ops / samples.length into it
+    private static long[] runThreads(int threads, int ops, ThreadedOp op, long[] samples) {
+        java.util.concurrent.CountDownLatch ready = new java.util.concurrent.CountDownLatch(threads);
+        java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.atomic.AtomicLong bytes = new java.util.concurrent.atomic.AtomicLong();
+        java.util.concurrent.atomic.AtomicReference<Throwable> failure = new java.util.concurrent.atomic.AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            workers[t] = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                    long bytesBefore = allocatedBytes();
+                    if (thread == 0 && samples != null) {
+                        int stride = Math.max(1, ops / samples.length);
+                        for (int i = 0; i < ops; i++) {
+                            if (i % stride == 0 && i / stride < samples.length) {
+                                long begin = System.nanoTime();
+                                op.accept(thread, i);
+                                samples[i / stride] = System.nanoTime() - begin;
+                            } else {
+                                op.accept(thread, i);
+                            }
+                        }
+                    } else {
+                        for (int i = 0; i < ops; i++) {
+                            op.accept(thread, i);
+                        }
+                    }
+                    bytes.addAndGet(allocatedBytes() - bytesBefore);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            workers[t].start();
+        }
+
+        long begin;
+        try {
+            ready.await();
+            begin = System.nanoTime();
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+        long elapsed = System.nanoTime() - begin;
+        if (failure.get() != null) {
+            throw new IllegalStateException("Benchmark thread failed", failure.get());
+        }
+        return new long[] {elapsed, bytes.get()};
+    }
+
+    // Runs a single op and returns the hash of its result, 0 for an IntConsumer
+    private static int step(int i, IntConsumer op, ReadOp read) {
+        if (read == null) {
+            op.accept(i);
+            return 0;
+        }
+        Object result = read.apply(i);
+        return result == null ? 0 : result.hashCode();
+    }
+
+    private static long allocatedBytes() {
+        return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long percentile(long[] sorted, int n, double p) {
+        if (n == 0) return 0;
+        int index = (int) Math.ceil(p * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, index))];
+    }
+
+    // The measurements of a single benchmark run
+    public static class Result {
+        public final String name;
+        public final double opsPerSecond;
+        public final double bytesPerOp;
+        public final double bytesPerSecond;
+        public final long p50, p90, p99, p999;
+
+        public Result(String name, double opsPerSecond, double bytesPerOp, double bytesPerSecond,
+                      long p50, long p90, long p99, long p999) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.bytesPerOp = bytesPerOp;
+            this.bytesPerSecond = bytesPerSecond;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+        }
+
+        public static String header() {
+            return String.format("%-56s %14s %10s %12s %8s %8s %8s %8s",
+                "benchmark", "ops/s", "B/op", "MB/s alloc", "p50 ns", "p90 ns", "p99 ns", "p99.9 ns");
+        }
+
+        @Override public String toString() {
+            return String.format("%-56s %14.0f %10.1f %12.1f %8d %8d %8d %8d",
+                name, opsPerSecond, bytesPerOp, bytesPerSecond / (1024 * 1024), p50, p90, p99, p999);
+        }
+    }
+}
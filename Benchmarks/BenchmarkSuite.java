@@ -0,0 +1,713 @@
+import IndexedPriorityQueue.MinIndexedDHeap;
+
+// Runs the benchmarks of every structure in the library so that any performance
+// change has a baseline to compare against. Usage:
+//
+//   java BenchmarkSuite [--sizes=1000,100000,1000000] [--only=HashTable]
+//                       [--warmup=3] [--iterations=5]
+//
+// Sizes up to 100M are supported but remember to give the JVM a heap to match
+// (e.g. -Xmx32g), boxed keys alone take 16 bytes each.
+@SuppressWarnings("unchecked")
+public class BenchmarkSuite {
+    private static final long SEED = 0x5EED;
+
+    // Unbalanced trees are quadratic (and recursive) on adversarial input,
+    // so above this size the adversarial tree benchmarks are skipped
+    private static final int MAX_DEGENERATE_TREE_SIZE = 10_000;
+
+    private final Benchmark benchmark;
+    private final String only;
+
+    public BenchmarkSuite(Benchmark benchmark, String only) {
+        this.benchmark = benchmark;
+        this.only = only;
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = {1_000, 100_000, 1_000_000};
+        String only = null;
+        int warmup = 3, iterations = 5;
+        for (String arg : args) {
+            if (arg.startsWith("--sizes=")) {
+                String[] parts = arg.substring("--sizes=".length()).split(",");
+                sizes = new int[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    sizes[i] = Integer.parseInt(parts[i].replace("_", ""));
+                }
+            } else if (arg.startsWith("--only=")) {
+                only = arg.substring("--only=".length());
+            } else if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        BenchmarkSuite suite = new BenchmarkSuite(new Benchmark(warmup, iterations), only);
+        System.out.println(Benchmark.Result.header());
+        for (int n : sizes) {
+            for (KeyDistribution dist : KeyDistribution.values()) {
+                suite.hashTables(n, dist);
+                suite.caches(n, dist);
+                suite.priorityQueues(n, dist);
+                suite.trees(n, dist);
+                suite.unionFind(n, dist);
+                suite.fenwickTree(n, dist);
+            }
+            suite.sequences(n);
+            suite.hashTableChurn(n);
+            suite.hashTableBulkLoad(n);
+            suite.concurrentQueues(n);
+            suite.concurrentStacks(n);
+            suite.priorityQueueArity(n);
+            suite.priorityQueueBatches(n);
+            suite.concurrentPriorityQueues(n);
+        }
+    }
+
+    // Returns true if the benchmark with the given name was selected with --only
+    private boolean selected(String name) {
+        return only == null || name.contains(only);
+    }
+
+    private void report(String name, int ops, Runnable setup, java.util.function.IntConsumer op) {
+        if (selected(name)) {
+            System.out.println(benchmark.run(name, ops, setup, op));
+        }
+    }
+
+    // Like report(), for ops that only read, see Benchmark.runRead
+    private void reportRead(String name, int ops, Runnable setup, Benchmark.ReadOp op) {
+        if (selected(name)) {
+            System.out.println(benchmark.runRead(name, ops, setup, op));
+        }
+    }
+
+    private void reportThreaded(String name, int threads, int ops, Runnable setup, Benchmark.ThreadedOp op) {
+        if (selected(name)) {
+            System.out.println(benchmark.runThreaded(name, threads, ops, setup, op));
+        }
+    }
+
+    private static String name(String structure, String op, int n, KeyDistribution dist) {
+        return structure + "." + op + " n=" + n + " " + dist.name().toLowerCase();
+    }
+
+    // Creates an array of a generic type, like the one element arrays the
+    // benchmark lambdas use as mutable references. 'type' is the raw class
+    private static <T> T[] newArray(Class<?> type, int length) {
+        return (T[]) java.lang.reflect.Array.newInstance(type, length);
+    }
+
+    // Boxes the keys ahead of time so the benchmarks do not measure Integer.valueOf
+    private static Integer[] box(int[] keys) {
+        Integer[] boxed = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            boxed[i] = keys[i];
+        }
+        return boxed;
+    }
+
+    // put/get/remove for the hash-table implementations
+    private void hashTables(int n, KeyDistribution dist) {
+        Integer[] keys = box(dist.keys(n, n, SEED));
+
+        final HashTableSeparateChaining<Integer, Integer>[] sc = newArray(HashTableSeparateChaining.class, 1);
+        report(name("HashTableSeparateChaining", "put", n, dist), n,
+            () -> sc[0] = new HashTableSeparateChaining<>(),
+            i -> sc[0].put(keys[i], keys[i]));
+        reportRead(name("HashTableSeparateChaining", "get", n, dist), n,
+            () -> { if (sc[0] == null || sc[0].size() == 0) { sc[0] = new HashTableSeparateChaining<>(); for (Integer k : keys) sc[0].put(k, k); } },
+            i -> sc[0].get(keys[i]));
+        report(name("HashTableSeparateChaining", "remove", n, dist), n,
+            () -> { sc[0] = new HashTableSeparateChaining<>(); for (Integer k : keys) sc[0].put(k, k); },
+            i -> sc[0].remove(keys[i]));
+
+        final HashTableQuadraticProbing<Integer, Integer>[] qp = newArray(HashTableQuadraticProbing.class, 1);
+        report(name("HashTableQuadraticProbing", "put", n, dist), n,
+            () -> qp[0] = new HashTableQuadraticProbing<>(),
+            i -> qp[0].put(keys[i], keys[i]));
+        reportRead(name("HashTableQuadraticProbing", "get", n, dist), n,
+            () -> { if (qp[0] == null || qp[0].size() == 0) { qp[0] = new HashTableQuadraticProbing<>(); for (Integer k : keys) qp[0].put(k, k); } },
+            i -> qp[0].get(keys[i]));
+        report(name("HashTableQuadraticProbing", "remove", n, dist), n,
+            () -> { qp[0] = new HashTableQuadraticProbing<>(); for (Integer k : keys) qp[0].put(k, k); },
+            i -> qp[0].remove(keys[i]));
+
+        final HashTableSwiss<Integer, Integer>[] sw = newArray(HashTableSwiss.class, 1);
+        report(name("HashTableSwiss", "put", n, dist), n,
+            () -> sw[0] = new HashTableSwiss<>(),
+            i -> sw[0].put(keys[i], keys[i]));
+        reportRead(name("HashTableSwiss", "get", n, dist), n,
+            () -> { if (sw[0] == null || sw[0].size() == 0) { sw[0] = new HashTableSwiss<>(); for (Integer k : keys) sw[0].put(k, k); } },
+            i -> sw[0].get(keys[i]));
+        report(name("HashTableSwiss", "remove", n, dist), n,
+            () -> { sw[0] = new HashTableSwiss<>(); for (Integer k : keys) sw[0].put(k, k); },
+            i -> sw[0].remove(keys[i]));
+
+        // Lookups of keys that are not in the table, the keys are never
+        // negative so their complements are all missing
+        Integer[] missing = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            missing[i] = ~keys[i];
+        }
+        reportRead(name("HashTableSeparateChaining", "getMissing", n, dist), n,
+            () -> { sc[0] = new HashTableSeparateChaining<>(); for (Integer k : keys) sc[0].put(k, k); },
+            i -> sc[0].get(missing[i]));
+        reportRead(name("HashTableQuadraticProbing", "getMissing", n, dist), n,
+            () -> { qp[0] = new HashTableQuadraticProbing<>(); for (Integer k : keys) qp[0].put(k, k); },
+            i -> qp[0].get(missing[i]));
+        reportRead(name("HashTableSwiss", "getMissing", n, dist), n,
+            () -> { sw[0] = new HashTableSwiss<>(); for (Integer k : keys) sw[0].put(k, k); },
+            i -> sw[0].get(missing[i]));
+
+        int[] primitiveKeys = dist.keys(n, n, SEED);
+        final LongLongQuadraticProbingMap[] ll = new LongLongQuadraticProbingMap[1];
+        report(name("LongLongQuadraticProbingMap", "put", n, dist), n,
+            () -> ll[0] = new LongLongQuadraticProbingMap(),
+            i -> ll[0].put(primitiveKeys[i], i));
+        reportRead(name("LongLongQuadraticProbingMap", "get", n, dist), n,
+            () -> { if (ll[0] == null || ll[0].size() == 0) { ll[0] = new LongLongQuadraticProbingMap(); for (int k : primitiveKeys) ll[0].put(k, k); } },
+            i -> ll[0].get(primitiveKeys[i]));
+        report(name("LongLongQuadraticProbingMap", "remove", n, dist), n,
+            () -> { ll[0] = new LongLongQuadraticProbingMap(); for (int k : primitiveKeys) ll[0].put(k, k); },
+            i -> ll[0].remove(primitiveKeys[i]));
+    }
+
+    // Long lived tables under 50/50 insert/delete churn at a 0.9 load factor.
+    // Each op removes the oldest live key, inserts a fresh key and then gets a
+    // random live key, so the get latency shows how far probe chains degrade
+    private void hashTableChurn(int n) {
+        KeyDistribution dist = KeyDistribution.UNIFORM;
+        final double loadFactor = 0.9;
+        int capacity = Integer.highestOneBit(Math.max(16, n));
+        int live = (int) (capacity * loadFactor) - 1;
+        Integer[] fresh = box(dist.distinctKeys(live + n, SEED));
+        int[] probes = dist.keys(n, live, SEED + 1);
+
+        // The constructors round up to the next power of two above their argument
+        final Integer[] window = new Integer[live];
+        final HashTableQuadraticProbing<Integer, Integer>[] qp = newArray(HashTableQuadraticProbing.class, 1);
+        report(name("HashTableQuadraticProbing", "churn", n, dist), n,
+            () -> {
+                qp[0] = new HashTableQuadraticProbing<>(capacity - 1, loadFactor);
+                for (int i = 0; i < live; i++) { window[i] = fresh[i]; qp[0].put(fresh[i], fresh[i]); }
+            },
+            i -> {
+                int slot = i % live;
+                qp[0].remove(window[slot]);
+                window[slot] = fresh[live + i];
+                qp[0].put(window[slot], window[slot]);
+                qp[0].get(window[probes[i]]);
+            });
+
+        final HashTableRobinHood<Integer, Integer>[] rh = newArray(HashTableRobinHood.class, 1);
+        report(name("HashTableRobinHood", "churn", n, dist), n,
+            () -> {
+                rh[0] = new HashTableRobinHood<>(capacity - 1, loadFactor);
+                for (int i = 0; i < live; i++) { window[i] = fresh[i]; rh[0].put(fresh[i], fresh[i]); }
+            },
+            i -> {
+                int slot = i % live;
+                rh[0].remove(window[slot]);
+                window[slot] = fresh[live + i];
+                rh[0].put(window[slot], window[slot]);
+                rh[0].get(window[probes[i]]);
+            });
+        if (selected("HashTableRobinHood.churn")) {
+            System.out.println("  HashTableRobinHood after churn: max probe length " + rh[0].maxProbeLength()
+                + ", average probe length " + String.format("%.2f", rh[0].averageProbeLength()));
+        }
+    }
+
+    // Cold start loading of n distinct keys into an empty table. Each op is a
+    // whole load, so ops/s is loads per second: one put per key starting from
+    // the default capacity against the presized bulk paths
+    private void hashTableBulkLoad(int n) {
+        Integer[] keys = box(KeyDistribution.UNIFORM.distinctKeys(n, SEED));
+        String suffix = " n=" + n + " uniform";
+
+        report("HashTableSeparateChaining.loadByPut" + suffix, 1, () -> {},
+            i -> { HashTableSeparateChaining<Integer, Integer> t = new HashTableSeparateChaining<>(); for (Integer k : keys) t.put(k, k); });
+        report("HashTableSeparateChaining.fromArrays" + suffix, 1, () -> {},
+            i -> HashTableSeparateChaining.fromArrays(keys, keys));
+        report("HashTableSeparateChaining.fromArraysParallel" + suffix, 1, () -> {},
+            i -> HashTableSeparateChaining.fromArrays(keys, keys, true));
+
+        report("HashTableQuadraticProbing.loadByPut" + suffix, 1, () -> {},
+            i -> { HashTableQuadraticProbing<Integer, Integer> t = new HashTableQuadraticProbing<>(); for (Integer k : keys) t.put(k, k); });
+        report("HashTableQuadraticProbing.fromArrays" + suffix, 1, () -> {},
+            i -> HashTableQuadraticProbing.fromArrays(keys, keys));
+        report("HashTableQuadraticProbing.fromArraysParallel" + suffix, 1, () -> {},
+            i -> HashTableQuadraticProbing.fromArrays(keys, keys, true));
+    }
+
+    // Producer/consumer hand-off through a bounded queue of 1024 elements with
+    // 1 to 16 threads, each doing n ops. With one thread every op is an offer
+    // and a poll, otherwise the even threads only offer and the odd ones only
+    // poll, yielding while the queue is full or empty (BlockingQueue waits
+    // instead). The baseline is an ArrayQueue behind a lock. The batch variants move 16 elements per fill
+    // and drain call, which counts as 16 ops
+    private void concurrentQueues(int n) {
+        Integer[] keys = box(KeyDistribution.UNIFORM.keys(n, n, SEED));
+        final int capacity = 1024, batch = 16;
+
+        for (int threads : new int[] {1, 2, 4, 8, 16}) {
+            String suffix = " n=" + n + " threads=" + threads;
+
+            final ArrayQueue<Integer>[] locked = newArray(ArrayQueue.class, 1);
+            reportThreaded("ArrayQueue.locked.offerPoll" + suffix, threads, n,
+                () -> locked[0] = new ArrayQueue<>(capacity, true),
+                (thread, i) -> {
+                    ArrayQueue<Integer> q = locked[0];
+                    if (threads == 1 || thread % 2 == 0) {
+                        while (true) {
+                            synchronized (q) { if (q.offer(keys[i])) break; }
+                            Thread.yield();
+                        }
+                    }
+                    if (threads == 1 || thread % 2 == 1) {
+                        while (true) {
+                            synchronized (q) { if (!q.isEmpty()) { q.poll(); break; } }
+                            Thread.yield();
+                        }
+                    }
+                });
+
+            // Waits on a condition instead of yielding
+            final BlockingQueue<Integer>[] blocking = newArray(BlockingQueue.class, 1);
+            reportThreaded("BlockingQueue.putTake" + suffix, threads, n,
+                () -> blocking[0] = new BlockingQueue<>(capacity),
+                (thread, i) -> {
+                    try {
+                        if (threads == 1 || thread % 2 == 0) blocking[0].put(keys[i]);
+                        if (threads == 1 || thread % 2 == 1) blocking[0].take();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+
+            if (threads <= 2) {
+                final SpscArrayQueue<Integer>[] spsc = newArray(SpscArrayQueue.class, 1);
+                reportThreaded("SpscArrayQueue.offerPoll" + suffix, threads, n,
+                    () -> spsc[0] = new SpscArrayQueue<>(capacity),
+                    (thread, i) -> {
+                        if (thread == 0) while (!spsc[0].offer(keys[i])) Thread.yield();
+                        if (threads == 1 || thread == 1) while (spsc[0].poll() == null) Thread.yield();
+                    });
+            }
+
+            final MpmcArrayQueue<Integer>[] mpmc = newArray(MpmcArrayQueue.class, 1);
+            reportThreaded("MpmcArrayQueue.offerPoll" + suffix, threads, n,
+                () -> mpmc[0] = new MpmcArrayQueue<>(capacity),
+                (thread, i) -> {
+                    if (threads == 1 || thread % 2 == 0) while (!mpmc[0].offer(keys[i])) Thread.yield();
+                    if (threads == 1 || thread % 2 == 1) while (mpmc[0].poll() == null) Thread.yield();
+                });
+            reportThreaded("MpmcArrayQueue.fillDrain" + suffix, threads, n,
+                () -> mpmc[0] = new MpmcArrayQueue<>(capacity),
+                (thread, i) -> {
+                    if (i % batch != 0) return;
+                    int count = Math.min(batch, n - i);
+                    if (threads == 1 || thread % 2 == 0) {
+                        for (int done = 0; done < count; Thread.yield()) {
+                            done += mpmc[0].fill(() -> keys[i], count - done);
+                            if (done == count) break;
+                        }
+                    }
+                    if (threads == 1 || thread % 2 == 1) {
+                        for (int done = 0; done < count; Thread.yield()) {
+                            done += mpmc[0].drain(k -> {}, count - done);
+                            if (done == count) break;
+                        }
+                    }
+                });
+        }
+    }
+
+    // A shared free-list: every op pops an element, pushing a new one if the
+    // stack was empty, and pushes it back, like taking a buffer from a pool and
+    // returning it. The baseline is a Stack behind a lock
+    private void concurrentStacks(int n) {
+        Integer[] keys = box(KeyDistribution.UNIFORM.keys(n, n, SEED));
+
+        for (int threads : new int[] {1, 2, 4, 8, 16}) {
+            String suffix = " n=" + n + " threads=" + threads;
+
+            final Stack<Integer>[] locked = newArray(Stack.class, 1);
+            reportThreaded("Stack.locked.popPush" + suffix, threads, n,
+                () -> locked[0] = new Stack<>(),
+                (thread, i) -> {
+                    Stack<Integer> s = locked[0];
+                    Integer elem;
+                    synchronized (s) { elem = s.isEmpty() ? keys[i] : s.pop(); }
+                    synchronized (s) { s.push(elem); }
+                });
+
+            final ConcurrentStack<Integer>[] stack = newArray(ConcurrentStack.class, 1);
+            reportThreaded("ConcurrentStack.popPush" + suffix, threads, n,
+                () -> stack[0] = new ConcurrentStack<>(),
+                (thread, i) -> {
+                    Integer elem = stack[0].poll();
+                    stack[0].push(elem == null ? keys[i] : elem);
+                });
+        }
+    }
+
+    // Read-through use of a cache a tenth the size of the key space: each op
+    // gets a key and puts it on a miss. The hit rate is printed after the run.
+    // The expiring cache is unbounded, so it only measures the cost of a put
+    // (with its write buffer and timer wheel work) and of a get
+    private void caches(int n, KeyDistribution dist) {
+        Integer[] keys = box(dist.keys(n, n, SEED));
+        long maximum = Math.max(16, n / 10);
+
+        for (BoundedCache.Policy policy : BoundedCache.Policy.values()) {
+            String name = name("BoundedCache", policy.name().toLowerCase(), n, dist);
+            final BoundedCache<Integer, Integer>[] cache = newArray(BoundedCache.class, 1);
+            report(name, n,
+                () -> cache[0] = new BoundedCache<>(policy, maximum),
+                i -> { if (cache[0].get(keys[i]) == null) cache[0].put(keys[i], keys[i]); });
+            if (selected(name)) {
+                System.out.println("  " + name + " hit rate " + String.format("%.3f", cache[0].hitRate()));
+            }
+        }
+
+        final ExpiringCache<Integer, Integer>[] expiring = newArray(ExpiringCache.class, 1);
+        report(name("ExpiringCache", "put", n, dist), n,
+            () -> expiring[0] = new ExpiringCache<>(1, java.util.concurrent.TimeUnit.MINUTES),
+            i -> expiring[0].put(keys[i], keys[i]));
+        reportRead(name("ExpiringCache", "get", n, dist), n,
+            () -> { if (expiring[0] == null || expiring[0].isEmpty()) { expiring[0] = new ExpiringCache<>(1, java.util.concurrent.TimeUnit.MINUTES); for (Integer k : keys) expiring[0].put(k, k); } },
+            i -> expiring[0].get(keys[i]));
+    }
+
+    // add/poll for the binary heap and the indexed d-ary heap
+    private void priorityQueues(int n, KeyDistribution dist) {
+        Integer[] keys = box(dist.keys(n, n, SEED));
+
+        final PriorityQueue<Integer>[] pq = newArray(PriorityQueue.class, 1);
+        report(name("PriorityQueue", "add", n, dist), n,
+            () -> pq[0] = new PriorityQueue<>(n),
+            i -> pq[0].add(keys[i]));
+        report(name("PriorityQueue", "poll", n, dist), n,
+            () -> { pq[0] = new PriorityQueue<>(n); for (Integer k : keys) pq[0].add(k); },
+            i -> pq[0].poll());
+        report(name("PriorityQueue.unindexed", "add", n, dist), n,
+            () -> pq[0] = new PriorityQueue<>(n, false),
+            i -> pq[0].add(keys[i]));
+        report(name("PriorityQueue.unindexed", "poll", n, dist), n,
+            () -> { pq[0] = new PriorityQueue<>(n, false); for (Integer k : keys) pq[0].add(k); },
+            i -> pq[0].poll());
+
+        // Removal of arbitrary elements, by value through the index
+        // and by the handle returned when the element was added
+        final PriorityQueue.Handle<Integer>[] handles = newArray(PriorityQueue.Handle.class, n);
+        report(name("PriorityQueue", "remove", n, dist), n,
+            () -> { pq[0] = new PriorityQueue<>(n); for (Integer k : keys) pq[0].add(k); },
+            i -> pq[0].remove(keys[i]));
+        report(name("PriorityQueue.unindexed", "addWithHandle", n, dist), n,
+            () -> pq[0] = new PriorityQueue<>(n, false),
+            i -> handles[i] = pq[0].addWithHandle(keys[i]));
+        report(name("PriorityQueue.unindexed", "removeHandle", n, dist), n,
+            () -> { pq[0] = new PriorityQueue<>(n, false); for (int j = 0; j < n; j++) handles[j] = pq[0].addWithHandle(keys[j]); },
+            i -> pq[0].remove(handles[i]));
+
+        report(name("PriorityQueue.unindexed", "addAll", n, dist), 1,
+            () -> pq[0] = new PriorityQueue<>(n, false),
+            i -> pq[0].addAll(java.util.Arrays.asList(keys)));
+        report(name("PriorityQueue.comparator", "poll", n, dist), n,
+            () -> { pq[0] = new PriorityQueue<>(n, java.util.Comparator.naturalOrder(), false); for (Integer k : keys) pq[0].add(k); },
+            i -> pq[0].poll());
+
+        int[] primitiveKeys = dist.keys(n, n, SEED);
+        final IntMinHeap[] ih = new IntMinHeap[1];
+        report(name("IntMinHeap", "add", n, dist), n,
+            () -> ih[0] = new IntMinHeap(n),
+            i -> ih[0].add(primitiveKeys[i], i));
+        report(name("IntMinHeap", "poll", n, dist), n,
+            () -> { ih[0] = new IntMinHeap(n); for (int i = 0; i < n; i++) ih[0].add(primitiveKeys[i], i); },
+            i -> ih[0].poll());
+
+        final MinIndexedDHeap<Integer>[] dh = newArray(MinIndexedDHeap.class, 1);
+        report(name("MinIndexedDHeap", "add", n, dist), n,
+            () -> dh[0] = new MinIndexedDHeap<>(4, n),
+            i -> dh[0].insert(i, keys[i]));
+        report(name("MinIndexedDHeap", "poll", n, dist), n,
+            () -> { dh[0] = new MinIndexedDHeap<>(4, n); for (int i = 0; i < n; i++) dh[0].insert(i, keys[i]); },
+            i -> dh[0].pollMinValue());
+    }
+
+    // Binary against 4-ary and 8-ary PriorityQueue layouts. 'hold' is the
+    // classic event queue workload: poll the earliest event and schedule a
+    // new one a random delay after it, so the queue stays at n elements and
+    // every op is a poll and an add, like the relaxation loop of Dijkstra
+    private void priorityQueueArity(int n) {
+        int[] delays = KeyDistribution.UNIFORM.keys(n, n, SEED);
+        Integer[] keys = box(KeyDistribution.UNIFORM.keys(n, n, SEED + 1));
+        for (int arity : new int[] {PriorityQueue.BINARY, PriorityQueue.QUATERNARY, PriorityQueue.OCTONARY}) {
+            String structure = "PriorityQueue.arity" + arity;
+            final PriorityQueue<Integer>[] pq = newArray(PriorityQueue.class, 1);
+            Runnable fill = () -> {
+                pq[0] = new PriorityQueue<>(n, null, false, arity);
+                pq[0].addAll(java.util.Arrays.asList(keys));
+                pq[0].peek();
+            };
+            report(name(structure, "hold", n, KeyDistribution.UNIFORM), n, fill,
+                i -> pq[0].add(pq[0].poll() + delays[i]));
+            report(name(structure, "poll", n, KeyDistribution.UNIFORM), n, fill,
+                i -> pq[0].poll());
+        }
+    }
+
+    // The batch operations of PriorityQueue against their one element at a
+    // time counterparts. An op of 'pollLoop' and 'pollBatch' removes BATCH
+    // elements, or all of them for the 'All' variants, an op of 'addAllChunks'
+    // adds a 16th of the keys, and the
+    // last one also peeks so the deferred rebuild is measured too
+    private void priorityQueueBatches(int n) {
+        final int BATCH = 256;
+        Integer[] keys = box(KeyDistribution.UNIFORM.keys(n, n, SEED));
+        java.util.List<Integer> keyList = java.util.Arrays.asList(keys);
+        final PriorityQueue<Integer>[] pq = newArray(PriorityQueue.class, 1);
+        Runnable fill = () -> {
+            pq[0] = new PriorityQueue<>(n, false);
+            pq[0].addAll(keyList);
+            pq[0].peek();
+        };
+        int batches = Math.max(1, n / BATCH);
+        report(name("PriorityQueue", "pollLoop" + BATCH, n, KeyDistribution.UNIFORM), batches, fill,
+            i -> { for (int j = 0; j < BATCH; j++) pq[0].poll(); });
+        report(name("PriorityQueue", "pollBatch" + BATCH, n, KeyDistribution.UNIFORM), batches, fill,
+            i -> pq[0].pollBatch(BATCH, k -> {}));
+        report(name("PriorityQueue", "pollLoopAll", n, KeyDistribution.UNIFORM), 1, fill,
+            i -> { for (int j = 0; j < n; j++) pq[0].poll(); });
+        report(name("PriorityQueue", "pollBatchAll", n, KeyDistribution.UNIFORM), 1, fill,
+            i -> pq[0].pollBatch(n, k -> {}));
+
+        int chunk = Math.max(1, n / 16);
+        java.util.List<Integer>[] chunks = newArray(java.util.List.class, 16);
+        for (int c = 0; c < 16; c++) {
+            chunks[c] = keyList.subList(Math.min(n, c * chunk), c == 15 ? n : Math.min(n, (c + 1) * chunk));
+        }
+        report(name("PriorityQueue", "addLoopChunks", n, KeyDistribution.UNIFORM), 16,
+            () -> pq[0] = new PriorityQueue<>(n, false),
+            i -> { for (Integer k : chunks[i]) pq[0].add(k); if (i == 15) pq[0].peek(); });
+        report(name("PriorityQueue", "addAllChunks", n, KeyDistribution.UNIFORM), 16,
+            () -> pq[0] = new PriorityQueue<>(n, false),
+            i -> { pq[0].addAll(chunks[i]); if (i == 15) pq[0].peek(); });
+
+        reportRead(name("PriorityQueue", "topK" + BATCH, n, KeyDistribution.UNIFORM), 1, () -> {},
+            i -> PriorityQueue.topK(keyList, BATCH));
+    }
+
+    // The hold workload of priorityQueueArity on n elements shared by all the
+    // threads: a PriorityQueue behind one lock, and the sharded queue with two
+    // shards per thread in both ordering modes
+    private void concurrentPriorityQueues(int n) {
+        int[] delays = KeyDistribution.UNIFORM.keys(n, n, SEED);
+        Integer[] keys = box(KeyDistribution.UNIFORM.keys(n, n, SEED + 1));
+
+        for (int threads : new int[] {1, 2, 4, 8, 16, 32}) {
+            String suffix = " n=" + n + " threads=" + threads;
+
+            final PriorityQueue<Integer>[] locked = newArray(PriorityQueue.class, 1);
+            reportThreaded("PriorityQueue.locked.hold" + suffix, threads, n,
+                () -> {
+                    locked[0] = new PriorityQueue<>(n, false);
+                    locked[0].addAll(java.util.Arrays.asList(keys));
+                    locked[0].peek();
+                },
+                (thread, i) -> {
+                    PriorityQueue<Integer> q = locked[0];
+                    synchronized (q) { q.add(q.poll() + delays[i]); }
+                });
+
+            for (boolean strict : new boolean[] {true, false}) {
+                final ConcurrentPriorityQueue<Integer>[] cpq = newArray(ConcurrentPriorityQueue.class, 1);
+                reportThreaded("ConcurrentPriorityQueue." + (strict ? "strict" : "relaxed") + ".hold" + suffix, threads, n,
+                    () -> {
+                        cpq[0] = new ConcurrentPriorityQueue<>(2 * threads, null, strict);
+                        for (Integer k : keys) cpq[0].add(k);
+                    },
+                    (thread, i) -> {
+                        Integer elem = cpq[0].poll();
+                        cpq[0].add(elem == null ? keys[i] : elem + delays[i]);
+                    });
+            }
+        }
+    }
+
+    // insert/contains for the unbalanced and the AVL balanced binary search trees
+    private void trees(int n, KeyDistribution dist) {
+        Integer[] keys = box(dist.keys(n, n, SEED));
+
+        if (dist != KeyDistribution.ADVERSARIAL || n <= MAX_DEGENERATE_TREE_SIZE) {
+            final BinarySearchTree<Integer>[] bst = newArray(BinarySearchTree.class, 1);
+            report(name("BinarySearchTree", "insert", n, dist), n,
+                () -> bst[0] = new BinarySearchTree<>(),
+                i -> bst[0].add(keys[i]));
+            reportRead(name("BinarySearchTree", "contains", n, dist), n,
+                () -> { if (bst[0] == null || bst[0].size() == 0) { bst[0] = new BinarySearchTree<>(); for (Integer k : keys) bst[0].add(k); } },
+                i -> bst[0].contains(keys[i]));
+        }
+
+        final AVLTreeRecursive<Integer>[] avl = newArray(AVLTreeRecursive.class, 1);
+        report(name("AVLTreeRecursive", "insert", n, dist), n,
+            () -> avl[0] = new AVLTreeRecursive<>(),
+            i -> avl[0].insert(keys[i]));
+        reportRead(name("AVLTreeRecursive", "contains", n, dist), n,
+            () -> { if (avl[0] == null || avl[0].size() == 0) { avl[0] = new AVLTreeRecursive<>(); for (Integer k : keys) avl[0].insert(k); } },
+            i -> avl[0].contains(keys[i]));
+    }
+
+    // unify/find over n elements
+    private void unionFind(int n, KeyDistribution dist) {
+        int[] p = dist.indexes(n, n, SEED);
+        int[] q = dist.indexes(n, n, SEED + 1);
+
+        final UnionFind[] uf = new UnionFind[1];
+        report(name("UnionFind", "union", n, dist), n,
+            () -> uf[0] = new UnionFind(n),
+            i -> uf[0].unify(p[i], q[i]));
+        reportRead(name("UnionFind", "find", n, dist), n,
+            () -> { uf[0] = new UnionFind(n); for (int i = 0; i < n; i++) uf[0].unify(p[i], q[i]); },
+            i -> uf[0].find(p[i]));
+    }
+
+    // prefixSum/add over n one-based positions
+    private void fenwickTree(int n, KeyDistribution dist) {
+        int[] indexes = dist.indexes(n, n, SEED);
+
+        final FenwickTree[] ft = new FenwickTree[1];
+        report(name("FenwickTree", "add", n, dist), n,
+            () -> ft[0] = new FenwickTree(n),
+            i -> ft[0].add(indexes[i] + 1, i));
+        reportRead(name("FenwickTree", "prefixSum", n, dist), n,
+            () -> { if (ft[0] == null) ft[0] = new FenwickTree(n); },
+            i -> ft[0].prefixSum(indexes[i] + 1));
+    }
+
+    // The sequential containers are insensitive to the key distribution,
+    // so they are only measured once per size
+    private void sequences(int n) {
+        Integer[] keys = box(KeyDistribution.UNIFORM.keys(n, n, SEED));
+        KeyDistribution dist = KeyDistribution.UNIFORM;
+
+        final Array<Integer>[] array = newArray(Array.class, 1);
+        report(name("Array", "add", n, dist), n,
+            () -> array[0] = new Array<>(),
+            i -> array[0].add(keys[i]));
+        reportRead(name("Array", "get", n, dist), n,
+            () -> { if (array[0] == null || array[0].size() < n) { array[0] = new Array<>(); for (Integer k : keys) array[0].add(k); } },
+            i -> array[0].get(i));
+        report(name("Array", "removeLast", n, dist), n,
+            () -> { array[0] = new Array<>(); for (Integer k : keys) array[0].add(k); },
+            i -> array[0].removeLast());
+
+        final IntArray[] intArray = new IntArray[1];
+        report(name("IntArray", "add", n, dist), n,
+            () -> intArray[0] = new IntArray(),
+            i -> intArray[0].add(keys[i]));
+        reportRead(name("IntArray", "get", n, dist), n,
+            () -> { if (intArray[0] == null || intArray[0].size() < n) { intArray[0] = new IntArray(); for (Integer k : keys) intArray[0].add(k); } },
+            i -> intArray[0].get(i));
+
+        final Stack<Integer>[] stack = newArray(Stack.class, 1);
+        report(name("Stack", "push", n, dist), n,
+            () -> stack[0] = new Stack<>(),
+            i -> stack[0].push(keys[i]));
+        report(name("Stack", "pop", n, dist), n,
+            () -> { stack[0] = new Stack<>(); for (Integer k : keys) stack[0].push(k); },
+            i -> stack[0].pop());
+
+        final Queue<Integer>[] queue = newArray(Queue.class, 1);
+        report(name("Queue", "offer", n, dist), n,
+            () -> queue[0] = new Queue<>(),
+            i -> queue[0].offer(keys[i]));
+        report(name("Queue", "poll", n, dist), n,
+            () -> { queue[0] = new Queue<>(); for (Integer k : keys) queue[0].offer(k); },
+            i -> queue[0].poll());
+
+        final ArrayStack<Integer>[] arrayStack = newArray(ArrayStack.class, 1);
+        report(name("ArrayStack", "push", n, dist), n,
+            () -> arrayStack[0] = new ArrayStack<>(),
+            i -> arrayStack[0].push(keys[i]));
+        report(name("ArrayStack", "pop", n, dist), n,
+            () -> { arrayStack[0] = new ArrayStack<>(); for (Integer k : keys) arrayStack[0].push(k); },
+            i -> arrayStack[0].pop());
+
+        final ArrayQueue<Integer>[] arrayQueue = newArray(ArrayQueue.class, 1);
+        report(name("ArrayQueue", "offer", n, dist), n,
+            () -> arrayQueue[0] = new ArrayQueue<>(),
+            i -> arrayQueue[0].offer(keys[i]));
+        report(name("ArrayQueue", "poll", n, dist), n,
+            () -> { arrayQueue[0] = new ArrayQueue<>(); for (Integer k : keys) arrayQueue[0].offer(k); },
+            i -> arrayQueue[0].poll());
+        // A bounded queue that stays half full, the steady state of a ring buffer
+        report(name("ArrayQueue", "offerPoll", n, dist), n,
+            () -> { arrayQueue[0] = new ArrayQueue<>(1024, true); for (int j = 0; j < 512; j++) arrayQueue[0].offer(keys[j % n]); },
+            i -> { arrayQueue[0].offer(keys[i]); arrayQueue[0].poll(); });
+
+        final IntArrayStack[] intStack = new IntArrayStack[1];
+        report(name("IntArrayStack", "push", n, dist), n,
+            () -> intStack[0] = new IntArrayStack(),
+            i -> intStack[0].push(keys[i]));
+
+        final IntArrayQueue[] intQueue = new IntArrayQueue[1];
+        report(name("IntArrayQueue", "offerPoll", n, dist), n,
+            () -> { intQueue[0] = new IntArrayQueue(1024, true); for (int j = 0; j < 512; j++) intQueue[0].offer(keys[j % n]); },
+            i -> { intQueue[0].offer(keys[i]); intQueue[0].poll(); });
+
+        final DoublyLinkedList<Integer>[] list = newArray(DoublyLinkedList.class, 1);
+        report(name("DoublyLinkedList", "addLast", n, dist), n,
+            () -> list[0] = new DoublyLinkedList<>(),
+            i -> list[0].addLast(keys[i]));
+        report(name("DoublyLinkedList", "removeFirst", n, dist), n,
+            () -> { list[0] = new DoublyLinkedList<>(); for (Integer k : keys) list[0].addLast(k); },
+            i -> list[0].removeFirst());
+        // LRU style churn on a list of 1024 elements: every op moves a node to
+        // the front through its handle, then unlinks another one and adds a new
+        // element in its place. With a pool the unlinked node is reused for the add
+        final DoublyLinkedList.Node<Integer>[] handles = newArray(DoublyLinkedList.Node.class, 1024);
+        for (int pool : new int[] {0, 16}) {
+            report(name("DoublyLinkedList", pool == 0 ? "lruChurn" : "lruChurnPooled", n, dist), n,
+                () -> { list[0] = new DoublyLinkedList<>(pool); for (int j = 0; j < handles.length; j++) handles[j] = list[0].addFirst(j); },
+                i -> {
+                    int slot = keys[i] & (handles.length - 1);
+                    int victim = (slot + 1) & (handles.length - 1);
+                    list[0].moveToFront(handles[slot]);
+                    list[0].unlink(handles[victim]);
+                    handles[victim] = list[0].addFirst(keys[i]);
+                });
+        }
+        // A full scan per op. The nodes were allocated in list order, which is
+        // the best case for the linked list since they end up next to each other
+        reportRead(name("DoublyLinkedList", "scan", n, dist), 1,
+            () -> { list[0] = new DoublyLinkedList<>(); for (Integer k : keys) list[0].addLast(k); },
+            i -> { long sum = 0; for (Integer k : list[0]) sum += k; return sum; });
+
+        final UnrolledLinkedList<Integer>[] unrolled = newArray(UnrolledLinkedList.class, 1);
+        report(name("UnrolledLinkedList", "addLast", n, dist), n,
+            () -> unrolled[0] = new UnrolledLinkedList<>(),
+            i -> unrolled[0].addLast(keys[i]));
+        report(name("UnrolledLinkedList", "removeFirst", n, dist), n,
+            () -> { unrolled[0] = new UnrolledLinkedList<>(); for (Integer k : keys) unrolled[0].addLast(k); },
+            i -> unrolled[0].removeFirst());
+        reportRead(name("UnrolledLinkedList", "scan", n, dist), 1,
+            () -> { unrolled[0] = new UnrolledLinkedList<>(); for (Integer k : keys) unrolled[0].addLast(k); },
+            i -> { long sum = 0; for (Integer k : unrolled[0]) sum += k; return sum; });
+        // Random indexed access and middle inserts are O(n / 64) each, so only
+        // a bounded number of them are timed
+        int indexedOps = Math.min(n, 10_000);
+        reportRead(name("UnrolledLinkedList", "get", n, dist), indexedOps,
+            () -> { unrolled[0] = new UnrolledLinkedList<>(); for (Integer k : keys) unrolled[0].addLast(k); },
+            i -> unrolled[0].get(keys[i] % n));
+        report(name("UnrolledLinkedList", "addAt", n, dist), indexedOps,
+            () -> { unrolled[0] = new UnrolledLinkedList<>(); for (Integer k : keys) unrolled[0].addLast(k); },
+            i -> unrolled[0].add(keys[i] % n, keys[i]));
+    }
+}
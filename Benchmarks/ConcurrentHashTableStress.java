@@ -0,0 +1,80 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Multi-threaded put/get stress check of ConcurrentHashTableSeparateChaining.
+// Every trial starts a small table with a single lock stripe, so that writers
+// keep racing each other into resizes, lets several threads put disjoint keys
+// and read them back, and then checks that no key was lost. Exits with status
+// 1 on the first failure.
+//
+//   java ConcurrentHashTableStress [--trials=2000] [--threads=8] [--puts=2000]
+public class ConcurrentHashTableStress {
+
+    public static void main(String[] args) throws InterruptedException {
+        int trials = 2000, threads = 8, puts = 2000;
+        for (String arg : args) {
+            if (arg.startsWith("--trials=")) {
+                trials = Integer.parseInt(arg.substring("--trials=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--puts=")) {
+                puts = Integer.parseInt(arg.substring("--puts=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        for (int trial = 0; trial < trials; trial++) {
+            String failure = runTrial(threads, puts);
+            if (failure != null) {
+                System.out.println("trial " + trial + " failed: " + failure);
+                System.exit(1);
+            }
+        }
+        System.out.println(trials + " trials of " + threads + " threads x " + puts + " puts passed");
+    }
+
+    // Returns a description of what went wrong, or null if the trial passed
+    private static String runTrial(int threads, int puts) throws InterruptedException {
+        ConcurrentHashTableSeparateChaining<Integer, Integer> table =
+            new ConcurrentHashTableSeparateChaining<>(16, 0.75, 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int base = t * puts;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = base; i < base + puts; i++) {
+                        table.put(i, i);
+                        Integer value = table.get(i);
+                        if (value == null || value != i) {
+                            failure.compareAndSet(null, "get(" + i + ") returned " + value + " right after put");
+                            return;
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e.toString());
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) return failure.get();
+
+        if (table.size() != threads * puts) {
+            return "size " + table.size() + " instead of " + threads * puts;
+        }
+        for (int i = 0; i < threads * puts; i++) {
+            Integer value = table.get(i);
+            if (value == null || value != i) {
+                return "get(" + i + ") returned " + value;
+            }
+        }
+        return null;
+    }
+}
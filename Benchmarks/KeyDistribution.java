@@ -0,0 +1,115 @@
+import java.util.Random;
+
+// The key distributions the benchmarks are run against. Keys are generated
+// up front so that the cost of producing them never shows up in a measurement.
+public enum KeyDistribution {
+    // Every key in [0, n) is equally likely
+    UNIFORM,
+
+    // A few hot keys are drawn far more often than the rest (theta = 0.99,
+    // the same skew YCSB uses). Generator from Gray et al., "Quickly
+    // Generating Billion-Record Synthetic Databases"
+    ZIPFIAN,
+
+    // Distinct keys that all share their low-order bits, emitted in descending
+    // order. The shared low bits put every key in the same few buckets of a
+    // hash-table, and the descending order makes every heap insert swim to
+    // the root and degenerates an unbalanced binary search tree into a list
+    ADVERSARIAL;
+
+    private static final double ZIPF_THETA = 0.99;
+
+    // Generates 'count' keys drawn from a key space of size 'n'
+    public int[] keys(int count, int n, long seed) {
+        if (count < 0 || n <= 0) {
+            throw new IllegalArgumentException("Illegal count/n: " + count + "/" + n);
+        }
+        int[] keys = new int[count];
+        Random random = new Random(seed);
+        switch (this) {
+            case UNIFORM:
+                for (int i = 0; i < count; i++) {
+                    keys[i] = random.nextInt(n);
+                }
+                break;
+            case ZIPFIAN:
+                double zetan = zeta(n, ZIPF_THETA);
+                double zeta2 = zeta(2, ZIPF_THETA);
+                double alpha = 1.0 / (1.0 - ZIPF_THETA);
+                double eta = (1 - Math.pow(2.0 / n, 1 - ZIPF_THETA)) / (1 - zeta2 / zetan);
+                for (int i = 0; i < count; i++) {
+                    double u = random.nextDouble();
+                    double uz = u * zetan;
+                    int key;
+                    if (uz < 1.0) {
+                        key = 0;
+                    } else if (uz < 1.0 + Math.pow(0.5, ZIPF_THETA)) {
+                        key = 1;
+                    } else {
+                        key = (int) (n * Math.pow(eta * u - eta + 1, alpha));
+                    }
+                    // Scatter the ranks so the hot keys are not also the smallest keys
+                    keys[i] = scramble(Math.min(key, n - 1), n);
+                }
+                break;
+            case ADVERSARIAL:
+                int shift = 31 - (32 - Integer.numberOfLeadingZeros(Math.max(1, n - 1)));
+                for (int i = 0; i < count; i++) {
+                    int rank = (count - 1 - i) % n;
+                    keys[i] = rank << shift;
+                }
+                break;
+        }
+        return keys;
+    }
+
+    // Generates 'count' indexes in [0, n) for the structures that are addressed
+    // by position (union find, Fenwick tree). The adversarial case has no hash
+    // to attack here so it only keeps the descending order
+    public int[] indexes(int count, int n, long seed) {
+        if (this != ADVERSARIAL) {
+            return keys(count, n, seed);
+        }
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = (count - 1 - i) % n;
+        }
+        return indexes;
+    }
+
+    // Generates each of 'n' distinct keys exactly once, shuffled for the UNIFORM
+    // and ZIPFIAN distributions and in the adversarial order otherwise
+    public int[] distinctKeys(int n, long seed) {
+        if (this != ADVERSARIAL) {
+            int[] keys = new int[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = i;
+            }
+            // Fisher-Yates shuffle
+            Random random = new Random(seed);
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = keys[i];
+                keys[i] = keys[j];
+                keys[j] = tmp;
+            }
+            return keys;
+        }
+        return keys(n, n, seed);
+    }
+
+    // Computes the generalized harmonic number sum_{i=1..n} 1/i^theta
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    // Maps a rank in [0, n) to a pseudo random key in [0, n)
+    private static int scramble(int rank, int n) {
+        long h = rank * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 1) % n);
+    }
+}
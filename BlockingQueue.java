@@ -0,0 +1,220 @@
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// A thread-safe queue whose consumers wait for an element instead of getting
+// an exception, see Queue. The elements live in an ArrayQueue guarded by a
+// single ReentrantLock, with one condition consumers wait on while the queue
+// is empty and one producers wait on while a bounded queue is full. Waiting on
+// a Condition parks the thread, and unlike a monitor held by synchronized it
+// does not pin a virtual thread to its carrier, so thousands of virtual thread
+// consumers can wait on one queue at little cost.
+//
+// Null elements are not allowed since poll() returns null for an empty queue.
+public class BlockingQueue<T> implements Iterable<T> {
+    private final ArrayQueue<T> queue;
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // Create an unbounded queue
+    public BlockingQueue() {
+        queue = new ArrayQueue<>();
+        capacity = Integer.MAX_VALUE;
+    }
+
+    // Create a queue holding at most 'capacity' elements,
+    // the buffer for all of them is allocated up front
+    public BlockingQueue(int capacity) {
+        queue = new ArrayQueue<>(capacity, true);
+        this.capacity = capacity;
+    }
+
+    // Return the size of the queue
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns whether or not the queue is empty
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Returns how many more elements fit before put() blocks
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    // Adds an element to the back of the queue, waiting while it is full
+    public void put(T elem) throws InterruptedException {
+        if (elem == null) throw new IllegalArgumentException("Null element");
+        lock.lockInterruptibly();
+        try {
+            while (!queue.offer(elem)) {
+                notFull.await();
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Adds an element to the back of the queue,
+    // returns false right away if it is full
+    public boolean offer(T elem) {
+        if (elem == null) throw new IllegalArgumentException("Null element");
+        lock.lock();
+        try {
+            if (!queue.offer(elem)) {
+                return false;
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Adds an element to the back of the queue, waiting up to the
+    // timeout while it is full. Returns false if it timed out
+    public boolean offer(T elem, long timeout, TimeUnit unit) throws InterruptedException {
+        if (elem == null) throw new IllegalArgumentException("Null element");
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!queue.offer(elem)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes the element at the front of the queue, waiting while it is empty
+    public T take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes the element at the front of the queue,
+    // returns null right away if it is empty
+    public T poll() {
+        lock.lock();
+        try {
+            return queue.isEmpty() ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes the element at the front of the queue, waiting up to the
+    // timeout while it is empty. Returns null if it timed out
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns the element at the front of the queue without
+    // removing it, or null if it is empty
+    public T peek() {
+        lock.lock();
+        try {
+            return queue.isEmpty() ? null : queue.peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Moves all the elements into the collection, returns how many it moved
+    public int drainTo(Collection<? super T> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    // Moves up to 'max' elements into the collection under a single
+    // acquisition of the lock, returns how many it moved
+    public int drainTo(Collection<? super T> collection, int max) {
+        if (collection == null) throw new IllegalArgumentException("Null collection");
+        if (max < 0) throw new IllegalArgumentException("Illegal max: " + max);
+        lock.lock();
+        try {
+            int count = Math.min(max, queue.size());
+            for (int i = 0; i < count; i++) {
+                collection.add(queue.poll());
+                // One waiting producer per freed slot, rather than all of them
+                notFull.signal();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes all the elements
+    public void clear() {
+        lock.lock();
+        try {
+            queue.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called while holding the lock
+    private T dequeue() {
+        T elem = queue.poll();
+        notFull.signal();
+        return elem;
+    }
+
+    // Iterates over a copy of the elements taken under the lock, so
+    // the iteration never blocks or sees a concurrent modification
+    @Override public java.util.Iterator<T> iterator() {
+        java.util.List<T> snapshot;
+        lock.lock();
+        try {
+            snapshot = new java.util.ArrayList<>(queue.size());
+            for (T elem : queue) {
+                snapshot.add(elem);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return java.util.Collections.unmodifiableList(snapshot).iterator();
+    }
+
+    @Override public String toString() {
+        return "BlockingQueue{size=" + size() + "}";
+    }
+}
@@ -0,0 +1,520 @@
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+// Estimates how often keys were seen recently with a count-min sketch of 4 bit
+// counters, 16 to a long. A key's frequency is the minimum of its 4 counters.
+// Once the number of increments reaches 10 times the number of counter rows all
+// counters are halved, so the estimate follows the recent popularity of a key
+// rather than its popularity over the whole lifetime of the cache.
+class FrequencySketch {
+    private static final long[] SEEDS = {
+        0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAXIMUM_ROWS = 1 << 24;
+
+    private long[] table = new long[0];
+    private int sampleSize;
+    private int size;
+
+    // Grows the sketch to have a row per expected key, which drops the
+    // counts seen so far
+    void ensureCapacity(long expectedKeys) {
+        int rows = (int) Math.min(MAXIMUM_ROWS, Math.max(16, Long.highestOneBit(expectedKeys - 1) << 1));
+        if (rows <= table.length) {
+            return;
+        }
+        table = new long[rows];
+        sampleSize = 10 * rows;
+        size = 0;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45D9F3B;
+        x = ((x >>> 16) ^ x) * 0x45D9F3B;
+        return (x >>> 16) ^ x;
+    }
+
+    // The row of the i-th counter of a key
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & (table.length - 1);
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int shift = (start + i) << 2;
+            frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> shift) & 0xF));
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int shift = (start + i) << 2;
+            // Counters saturate at 15
+            if (((table[index] >>> shift) & 0xF) != 0xF) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    // Halves every counter. Each odd counter loses half an increment to the
+    // rounding, which is taken off the sample count too
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size - (odd >>> 2)) >>> 1;
+    }
+}
+
+// A cache holding at most 'maximum' units of weight, by default every entry
+// weighs 1 so the bound is on the number of entries. Each entry is a node of an
+// intrusive doubly linked list which the hash-table maps the key to, so moving
+// an entry on access and evicting one are both O(1). The eviction policy is one
+// of:
+//
+// LRU        - evicts the least recently used entry.
+// LFU        - evicts the least frequently used entry, the least recently used
+//              one among those with the same count. The entries are kept in a
+//              list of frequency nodes in increasing order, each with the list
+//              of its entries (Shah, Mitra and Matani). Counts never decay.
+// W_TINY_LFU - new entries go to a small LRU window (1% of the maximum). The
+//              entry pushed out of the window only gets into the main space if
+//              it was seen more often recently than the entry the main space
+//              would evict for it, according to a FrequencySketch. The main
+//              space is a segmented LRU: entries start out in probation and
+//              move to the protected segment (80% of the main space) when they
+//              are hit again. This keeps one-hit wonders from flushing the
+//              cache and handles both recency and frequency skewed workloads.
+//
+// The cache is not thread safe. Null keys and values are not allowed.
+public class BoundedCache<K, V> {
+    public enum Policy { LRU, LFU, W_TINY_LFU }
+
+    // The list (queue) an entry is in, only W_TINY_LFU uses more than one
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private class Node {
+        K key;
+        V value;
+        int weight;
+        int queue = WINDOW;
+        Node prev, next;
+
+        // The frequency node of the entry, only used by LFU
+        FreqNode freqNode;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    // All the entries used 'freq' times, in LRU order
+    private class FreqNode {
+        int freq;
+        FreqNode prev, next;
+        Node entries = newList();
+
+        FreqNode(int freq) {
+            this.freq = freq;
+        }
+    }
+
+    private final Policy policy;
+    private final long maximum;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    private BiConsumer<? super K, ? super V> evictionListener;
+
+    private final HashTableSeparateChaining<K, Node> map = new HashTableSeparateChaining<>();
+
+    // Circular lists with a sentinel node, the head is the most recently used.
+    // LRU and LFU only use 'window' and its weight for all of their entries
+    private final Node window = newList();
+    private final Node probation = newList();
+    private final Node protectedList = newList();
+    private long windowWeight, probationWeight, protectedWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+
+    // Sentinel of the list of frequency nodes, in increasing frequency
+    private final FreqNode freqHead = new FreqNode(0);
+
+    private final FrequencySketch sketch;
+
+    private long hitCount, missCount, evictionCount;
+
+    // A cache holding up to 'maxEntries' entries
+    public BoundedCache(Policy policy, long maxEntries) {
+        this(policy, maxEntries, (key, value) -> 1);
+    }
+
+    // A cache holding entries up to a total weight of 'maxWeight', the
+    // weigher gives the weight of an entry when it is put in the cache
+    public BoundedCache(Policy policy, long maxWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Null policy");
+        }
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Illegal maximum: " + maxWeight);
+        }
+        if (weigher == null) {
+            throw new IllegalArgumentException("Null weigher");
+        }
+        this.policy = policy;
+        this.maximum = maxWeight;
+        this.weigher = weigher;
+
+        freqHead.prev = freqHead.next = freqHead;
+        windowMaximum = Math.max(1, maximum / 100);
+        protectedMaximum = (maximum - windowMaximum) * 4 / 5;
+        if (policy == Policy.W_TINY_LFU) {
+            sketch = new FrequencySketch();
+            sketch.ensureCapacity(Math.min(maximum, 1 << 16));
+        } else {
+            sketch = null;
+        }
+    }
+
+    // Called with each entry the cache evicts to stay within its maximum,
+    // but not for entries that are removed or replaced explicitly
+    public void setEvictionListener(BiConsumer<? super K, ? super V> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    // Returns the number of entries in the cache
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    // Returns the total weight of the entries in the cache
+    public long weight() {
+        return windowWeight + probationWeight + protectedWeight;
+    }
+
+    public long maximum() {
+        return maximum;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    // Returns the fraction of the gets that were hits, 1 if there were none
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    // Returns true if the key is cached, without counting as a use of it
+    public boolean containsKey(K key) {
+        return key != null && map.get(key) != null;
+    }
+
+    // Returns the value cached for the key, or null if there is none.
+    // A hit counts as a use of the entry
+    public V get(K key) {
+        if (key == null) throw new IllegalArgumentException("Null key");
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        Node node = map.get(key);
+        if (node == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        onAccess(node);
+        return node.value;
+    }
+
+    // Returns the value cached for the key, loading and caching it
+    // first on a miss. A null from the loader is not cached
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    // Caches the value under the key, evicting entries as needed to stay
+    // within the maximum. Returns the previous value or null
+    public V put(K key, V value) {
+        if (key == null) throw new IllegalArgumentException("Null key");
+        if (value == null) throw new IllegalArgumentException("Null value");
+        int weight = weigher.applyAsInt(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Illegal weight: " + weight);
+        }
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+
+        Node node = map.get(key);
+        if (node != null) {
+            V oldValue = node.value;
+            node.value = value;
+            addWeight(node.queue, weight - node.weight);
+            node.weight = weight;
+            onAccess(node);
+            evict();
+            return oldValue;
+        }
+
+        // LRU and LFU make room before linking the new entry, otherwise LFU
+        // would pick the new entry itself as the least frequently used one
+        if (policy != Policy.W_TINY_LFU) {
+            while (!map.isEmpty() && weight() + weight > maximum) {
+                evictEntry(policy == Policy.LRU ? last(window) : last(freqHead.next.entries));
+            }
+        }
+        node = new Node(key, value, weight);
+        map.put(key, node);
+        onInsert(node);
+        evict();
+        return null;
+    }
+
+    // Removes the entry of the key and returns its value, or null if there is none
+    public V remove(K key) {
+        if (key == null) throw new IllegalArgumentException("Null key");
+        Node node = map.remove(key);
+        if (node == null) {
+            return null;
+        }
+        removeNode(node);
+        return node.value;
+    }
+
+    // Removes all entries, the statistics are kept
+    public void clear() {
+        map.clear();
+        for (Node list : java.util.Arrays.asList(window, probation, protectedList)) {
+            list.prev = list.next = list;
+        }
+        freqHead.prev = freqHead.next = freqHead;
+        windowWeight = probationWeight = protectedWeight = 0;
+    }
+
+    private Node newList() {
+        Node sentinel = new Node(null, null, 0);
+        sentinel.prev = sentinel.next = sentinel;
+        return sentinel;
+    }
+
+    private void linkFirst(Node list, Node node) {
+        node.prev = list;
+        node.next = list.next;
+        list.next.prev = node;
+        list.next = node;
+    }
+
+    private void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+    }
+
+    // Returns the least recently used entry of a list or null if it is empty
+    private Node last(Node list) {
+        return list.prev == list ? null : list.prev;
+    }
+
+    private void addWeight(int queue, long delta) {
+        if (queue == WINDOW) {
+            windowWeight += delta;
+        } else if (queue == PROBATION) {
+            probationWeight += delta;
+        } else {
+            protectedWeight += delta;
+        }
+    }
+
+    private void onInsert(Node node) {
+        windowWeight += node.weight;
+        if (policy == Policy.LFU) {
+            // Entries always start in the list of the first frequency node
+            FreqNode first = freqHead.next;
+            if (first.freq != 1) {
+                first = newFreqNodeAfter(freqHead, 1);
+            }
+            linkFirst(first.entries, node);
+            node.freqNode = first;
+        } else {
+            linkFirst(window, node);
+            if (policy == Policy.W_TINY_LFU) {
+                sketch.ensureCapacity(map.size());
+            }
+        }
+    }
+
+    private void onAccess(Node node) {
+        if (policy == Policy.LRU) {
+            unlink(node);
+            linkFirst(window, node);
+        } else if (policy == Policy.LFU) {
+            incrementFrequency(node);
+        } else if (node.queue == WINDOW) {
+            unlink(node);
+            linkFirst(window, node);
+        } else if (node.queue == PROTECTED) {
+            unlink(node);
+            linkFirst(protectedList, node);
+        } else {
+            // A hit in probation promotes the entry, which may push the
+            // least recently used protected entries back into probation
+            unlink(node);
+            probationWeight -= node.weight;
+            node.queue = PROTECTED;
+            linkFirst(protectedList, node);
+            protectedWeight += node.weight;
+            for (Node demoted; protectedWeight > protectedMaximum && (demoted = last(protectedList)) != node; ) {
+                unlink(demoted);
+                protectedWeight -= demoted.weight;
+                demoted.queue = PROBATION;
+                linkFirst(probation, demoted);
+                probationWeight += demoted.weight;
+            }
+        }
+    }
+
+    // Unlinks the entry from whichever list it is in
+    private void removeNode(Node node) {
+        unlink(node);
+        addWeight(node.queue, -node.weight);
+        if (policy == Policy.LFU && node.freqNode.entries.next == node.freqNode.entries) {
+            removeFreqNode(node.freqNode);
+        }
+        node.freqNode = null;
+    }
+
+    private void evictEntry(Node node) {
+        removeNode(node);
+        map.remove(node.key);
+        evictionCount++;
+        if (evictionListener != null) {
+            evictionListener.accept(node.key, node.value);
+        }
+    }
+
+    private void evict() {
+        if (policy == Policy.W_TINY_LFU) {
+            evictTinyLfu();
+            return;
+        }
+        while (weight() > maximum) {
+            evictEntry(policy == Policy.LRU ? last(window) : last(freqHead.next.entries));
+        }
+    }
+
+    // Moves the entries the window overflows with into the main space, each
+    // one either taking the place of the main space's victims or getting
+    // evicted itself, depending on which of them is used more often
+    private void evictTinyLfu() {
+        final long mainMaximum = maximum - windowMaximum;
+        while (windowWeight > windowMaximum) {
+            Node candidate = last(window);
+            boolean admit = true;
+            while (probationWeight + protectedWeight + candidate.weight > mainMaximum) {
+                Node victim = last(probation);
+                if (victim == null) victim = last(protectedList);
+                if (victim == null) break;
+                // Ties go to the victim, so a scan of new keys cannot flush the cache
+                if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                    evictEntry(victim);
+                } else {
+                    admit = false;
+                    break;
+                }
+            }
+            if (admit) {
+                unlink(candidate);
+                windowWeight -= candidate.weight;
+                candidate.queue = PROBATION;
+                linkFirst(probation, candidate);
+                probationWeight += candidate.weight;
+            } else {
+                evictEntry(candidate);
+            }
+        }
+
+        // Only entries heavier than the main space can leave it over the maximum
+        while (weight() > maximum) {
+            Node victim = last(probation);
+            if (victim == null) victim = last(protectedList);
+            if (victim == null) victim = last(window);
+            evictEntry(victim);
+        }
+    }
+
+    // Moves an LFU entry to the frequency node after its own one
+    private void incrementFrequency(Node node) {
+        FreqNode current = node.freqNode;
+        FreqNode next = current.next;
+        if (next.freq != current.freq + 1) {
+            next = newFreqNodeAfter(current, current.freq + 1);
+        }
+        unlink(node);
+        linkFirst(next.entries, node);
+        node.freqNode = next;
+        if (current.entries.next == current.entries) {
+            removeFreqNode(current);
+        }
+    }
+
+    private FreqNode newFreqNodeAfter(FreqNode prev, int freq) {
+        FreqNode node = new FreqNode(freq);
+        node.prev = prev;
+        node.next = prev.next;
+        prev.next.prev = node;
+        prev.next = node;
+        return node;
+    }
+
+    private void removeFreqNode(FreqNode node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+    }
+
+    @Override public String toString() {
+        return "BoundedCache{policy=" + policy + ", size=" + size() + ", weight=" + weight()
+            + ", maximum=" + maximum + ", hitRate=" + hitRate() + "}";
+    }
+}
@@ -0,0 +1,456 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// A thread-safe hash-table using separate chaining, see HashTableSeparateChaining.
+//
+// Writers lock one of a fixed number of stripes, bucket i is guarded by the
+// stripe i % stripes. Readers never lock: the bucket heads are read through an
+// AtomicReferenceArray and the chain links and values are volatile, so a get()
+// always sees a consistent chain.
+//
+// Resizing is incremental. The writer that crosses the threshold claims the
+// resize and only then allocates the next table, so writers losing that race
+// allocate no table. Every writer that comes by afterwards migrates a small
+// chunk of buckets before doing its own work. A migrated bucket is replaced by a
+// forwarding node that sends readers and writers to the next table. Since the
+// capacity and the number of stripes are powers of two, bucket i of the old
+// table and buckets i and i + capacity of the new one share a stripe, so a
+// bucket is always migrated under the same lock its writers take.
+//
+// Keys and values may not be null, a null returned by the compute/merge
+// functions removes the mapping.
+public class ConcurrentHashTableSeparateChaining<K, V> implements Iterable<K> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 64;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    // Number of buckets a writer migrates per operation while resizing
+    private static final int TRANSFER_STRIDE = 64;
+
+    // Hash of the forwarding nodes, spread hashes are never negative
+    private static final int MOVED = -1;
+
+    static class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    // Placed at the head of a bucket once it has been moved to 'nextTable'
+    static final class ForwardingNode<K, V> extends Node<K, V> {
+        final AtomicReferenceArray<Node<K, V>> nextTable;
+
+        ForwardingNode(AtomicReferenceArray<Node<K, V>> nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+
+    // The state of an ongoing resize. Buckets of 'oldTable' are claimed in
+    // chunks through 'claimed' and counted in 'migrated' once moved.
+    // 'forward' and with it the next table is null until the writer that
+    // claimed the resize has allocated it
+    static final class Resize<K, V> {
+        final AtomicReferenceArray<Node<K, V>> oldTable;
+        volatile ForwardingNode<K, V> forward;
+        final AtomicInteger claimed = new AtomicInteger();
+        final AtomicInteger migrated = new AtomicInteger();
+
+        Resize(AtomicReferenceArray<Node<K, V>> oldTable) {
+            this.oldTable = oldTable;
+        }
+    }
+
+    private final double maxLoadFactor;
+    private final ReentrantLock[] locks;
+    private final LongAdder size = new LongAdder();
+    private final AtomicReference<Resize<K, V>> resizing = new AtomicReference<>();
+    private volatile AtomicReferenceArray<Node<K, V>> table;
+    private volatile int threshold;
+
+    public ConcurrentHashTableSeparateChaining() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public ConcurrentHashTableSeparateChaining(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public ConcurrentHashTableSeparateChaining(int capacity, double maxLoadFactor) {
+        this(capacity, maxLoadFactor, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    // 'concurrencyLevel' is the number of lock stripes, rounded up to a power of two
+    public ConcurrentHashTableSeparateChaining(int capacity, double maxLoadFactor, int concurrencyLevel) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Illegal Capacity");
+        }
+        if (maxLoadFactor <= 0 || Double.isNaN(maxLoadFactor) || Double.isInfinite(maxLoadFactor)) {
+            throw new IllegalArgumentException("Illegal maxLoadFactor");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Illegal concurrencyLevel");
+        }
+        int stripes = ceil2Power(Math.min(concurrencyLevel, MAXIMUM_CAPACITY));
+        int cap = Math.max(stripes, ceil2Power(Math.max(DEFAULT_CAPACITY, Math.min(capacity, MAXIMUM_CAPACITY))));
+
+        this.maxLoadFactor = maxLoadFactor;
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        threshold = (int) (cap * maxLoadFactor);
+        table = new AtomicReferenceArray<>(cap);
+    }
+
+    // Smallest power of two greater than or equal to n
+    private static int ceil2Power(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    // Mixes the high bits of the hash into the low bits used for the index
+    // and clears the sign bit, which is reserved for forwarding nodes
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) & 0x7FFFFFFF;
+    }
+
+    private ReentrantLock lockFor(int bucketIndex) {
+        return locks[bucketIndex & (locks.length - 1)];
+    }
+
+    // Returns the number of elements currently inside the hash-table
+    public int size() {
+        long n = size.sum();
+        return n < 0 ? 0 : (int) Math.min(n, Integer.MAX_VALUE);
+    }
+
+    // Return true/false depending on whether the hash-table is empty
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(K key) {
+        return hasKey(key);
+    }
+
+    public boolean hasKey(K key) {
+        return get(key) != null;
+    }
+
+    // Gets a key's value from the map without taking any lock,
+    // returns null if the key does not exist
+    public V get(K key) {
+        if (key == null) return null;
+        int hash = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        Node<K, V> e = tab.get(hash & (tab.length() - 1));
+        while (e != null) {
+            if (e.hash == MOVED) {
+                tab = ((ForwardingNode<K, V>) e).nextTable;
+                e = tab.get(hash & (tab.length() - 1));
+                continue;
+            }
+            if (e.hash == hash && key.equals(e.key)) {
+                return e.value;
+            }
+            e = e.next;
+        }
+        return null;
+    }
+
+    public V getOrDefault(K key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    // Insert, put and add all place a value in the hash-table
+    // and return the previous value, or null if there was none
+    public V put(K key, V value) {
+        return insert(key, value);
+    }
+
+    public V add(K key, V value) {
+        return insert(key, value);
+    }
+
+    public V insert(K key, V value) {
+        valueNotNullOrThrow(value);
+        return update(key, (k, oldValue) -> value, true);
+    }
+
+    // Atomically inserts the value if the key is absent, returns the
+    // current value if there is one and null otherwise
+    public V putIfAbsent(K key, V value) {
+        valueNotNullOrThrow(value);
+        return update(key, (k, oldValue) -> oldValue == null ? value : oldValue, true);
+    }
+
+    // Removes a key from the map and returns the value,
+    // returns null if the key does not exist
+    public V remove(K key) {
+        if (key == null) return null;
+        return update(key, (k, oldValue) -> null, true);
+    }
+
+    // Atomically computes the new value of a key from its current value
+    // (null if absent). Returns the new value, a null result removes the key
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return update(key, remappingFunction, false);
+    }
+
+    // Atomically computes a value for an absent key, the mapping
+    // function is called at most once per call
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = get(key);
+        if (value != null) return value;
+        return update(key, (k, oldValue) -> oldValue == null ? mappingFunction.apply(k) : oldValue, false);
+    }
+
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return update(key, (k, oldValue) -> oldValue == null ? null : remappingFunction.apply(k, oldValue), false);
+    }
+
+    // Atomically stores the value if the key is absent, otherwise combines
+    // the current value with it. Returns the new value
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        valueNotNullOrThrow(value);
+        return update(key, (k, oldValue) -> oldValue == null ? value : remappingFunction.apply(oldValue, value), false);
+    }
+
+    private static void valueNotNullOrThrow(Object value) {
+        if (value == null) throw new IllegalArgumentException("Null value");
+    }
+
+    // Applies 'remap' to the current value of the key (null if absent) while
+    // holding the lock of the key's bucket. A null result removes the key.
+    // Returns the previous value if 'returnPrevious' is set, else the new one
+    private V update(K key, BiFunction<? super K, ? super V, ? extends V> remap, boolean returnPrevious) {
+        if (key == null) throw new IllegalArgumentException("Null key");
+        helpResize();
+
+        int hash = spread(key.hashCode());
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        V oldValue, newValue;
+        boolean added = false;
+
+        while (true) {
+            int bucketIndex = hash & (tab.length() - 1);
+            ReentrantLock lock = lockFor(bucketIndex);
+            lock.lock();
+            try {
+                Node<K, V> first = tab.get(bucketIndex);
+
+                // The bucket was migrated, retry in the next table
+                if (first != null && first.hash == MOVED) {
+                    tab = ((ForwardingNode<K, V>) first).nextTable;
+                    continue;
+                }
+
+                Node<K, V> prev = null, e = first;
+                while (e != null && !(e.hash == hash && key.equals(e.key))) {
+                    prev = e;
+                    e = e.next;
+                }
+
+                oldValue = e == null ? null : e.value;
+                newValue = remap.apply(key, oldValue);
+
+                if (e != null) {
+                    if (newValue != null) {
+                        e.value = newValue;
+                    } else if (prev == null) {
+                        tab.set(bucketIndex, e.next);
+                        size.decrement();
+                    } else {
+                        prev.next = e.next;
+                        size.decrement();
+                    }
+                } else if (newValue != null) {
+                    tab.set(bucketIndex, new Node<>(hash, key, newValue, first));
+                    size.increment();
+                    added = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+            break;
+        }
+
+        if (added && resizing.get() == null && size.sum() > threshold) {
+            startResize();
+        }
+        return returnPrevious ? oldValue : newValue;
+    }
+
+    // Claims the resize if none is in progress yet and installs the next
+    // table. The table is only allocated once the claim is won, so writers
+    // racing to start the same resize do not each allocate one
+    private void startResize() {
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        if (tab.length() >= MAXIMUM_CAPACITY) return;
+        Resize<K, V> resize = new Resize<>(tab);
+        if (!resizing.compareAndSet(null, resize)) return;
+
+        // Another writer may have finished resizing 'tab' after it was
+        // read, in which case every bucket of it is already forwarded
+        if (table != tab) {
+            resizing.compareAndSet(resize, null);
+            return;
+        }
+        try {
+            resize.forward = new ForwardingNode<>(new AtomicReferenceArray<>(tab.length() * 2));
+        } catch (RuntimeException | Error e) {
+            // Give up the claim so a later writer can try again
+            resizing.compareAndSet(resize, null);
+            throw e;
+        }
+        helpResize();
+    }
+
+    // Migrates one chunk of buckets if a resize is in progress. The
+    // last writer to finish a chunk publishes the next table. Until the
+    // next table is allocated there is nothing to migrate to and writers
+    // keep using the current table
+    private void helpResize() {
+        Resize<K, V> resize = resizing.get();
+        if (resize == null) return;
+        ForwardingNode<K, V> forward = resize.forward;
+        if (forward == null) return;
+
+        int n = resize.oldTable.length();
+        int start = resize.claimed.getAndAdd(TRANSFER_STRIDE);
+        if (start >= n) return;
+        int end = Math.min(n, start + TRANSFER_STRIDE);
+
+        for (int i = start; i < end; i++) {
+            ReentrantLock lock = lockFor(i);
+            lock.lock();
+            try {
+                migrateBucket(resize.oldTable, forward, i);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // A stale resize, withdrawn by startResize, must not be published
+        if (resize.migrated.addAndGet(end - start) == n && table == resize.oldTable) {
+            table = forward.nextTable;
+            threshold = (int) (forward.nextTable.length() * maxLoadFactor);
+            resizing.compareAndSet(resize, null);
+        }
+    }
+
+    // Splits bucket i of the old table into buckets i and i + n of the next
+    // table. The nodes are copied so that readers still walking the old chain
+    // are not disturbed, then the old bucket is forwarded. A bucket that is
+    // already forwarded belongs to a stale resize and is left alone
+    private void migrateBucket(AtomicReferenceArray<Node<K, V>> oldTable, ForwardingNode<K, V> forward, int i) {
+        int n = oldTable.length();
+        Node<K, V> first = oldTable.get(i);
+        if (first != null && first.hash == MOVED) return;
+        Node<K, V> lo = null, hi = null;
+        for (Node<K, V> e = first; e != null; e = e.next) {
+            if ((e.hash & n) == 0) {
+                lo = new Node<>(e.hash, e.key, e.value, lo);
+            } else {
+                hi = new Node<>(e.hash, e.key, e.value, hi);
+            }
+        }
+        forward.nextTable.set(i, lo);
+        forward.nextTable.set(i + n, hi);
+        oldTable.set(i, forward);
+    }
+
+    // Removes every mapping, bucket by bucket. Like the other bulk operations
+    // this is not atomic with respect to concurrent writers
+    public void clear() {
+        clear(table, 0, 1);
+    }
+
+    // Clears buckets from, from + step, ... of 'tab', following forwarded buckets
+    private void clear(AtomicReferenceArray<Node<K, V>> tab, int from, int step) {
+        for (int i = from; i < tab.length(); i += step) {
+            AtomicReferenceArray<Node<K, V>> forwardedTo = null;
+            ReentrantLock lock = lockFor(i);
+            lock.lock();
+            try {
+                Node<K, V> first = tab.get(i);
+                if (first != null && first.hash == MOVED) {
+                    forwardedTo = ((ForwardingNode<K, V>) first).nextTable;
+                } else {
+                    int removed = 0;
+                    for (Node<K, V> e = first; e != null; e = e.next) {
+                        removed++;
+                    }
+                    tab.set(i, null);
+                    size.add(-removed);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (forwardedTo != null) {
+                clear(forwardedTo, i, tab.length());
+            }
+        }
+    }
+
+    // Visits every live node, following forwarded buckets into the next table
+    private void forEachNode(AtomicReferenceArray<Node<K, V>> tab, int from, int step,
+                             java.util.function.Consumer<Node<K, V>> action) {
+        for (int i = from; i < tab.length(); i += step) {
+            Node<K, V> e = tab.get(i);
+            if (e != null && e.hash == MOVED) {
+                forEachNode(((ForwardingNode<K, V>) e).nextTable, i, tab.length(), action);
+                continue;
+            }
+            for (; e != null; e = e.next) {
+                action.accept(e);
+            }
+        }
+    }
+
+    // Return the list of keys found within the hash table. The list
+    // is a weakly consistent snapshot when writers are active
+    public List<K> keys() {
+        List<K> keys = new ArrayList<>(size());
+        forEachNode(table, 0, 1, e -> keys.add(e.key));
+        return keys;
+    }
+
+    // Return the list of values found within the hash table
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        forEachNode(table, 0, 1, e -> values.add(e.value));
+        return values;
+    }
+
+    // Return an iterator over a snapshot of the keys, it never
+    // throws a ConcurrentModificationException
+    @Override public java.util.Iterator<K> iterator() {
+        return Collections.unmodifiableList(keys()).iterator();
+    }
+
+    // Returns a string representation of this hash table
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        forEachNode(table, 0, 1, e -> sb.append(e.key + " => " + e.value + ", "));
+        sb.append("}");
+        return sb.toString();
+    }
+}
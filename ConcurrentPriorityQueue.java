@@ -0,0 +1,223 @@
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+// A thread-safe priority queue split into several PriorityQueue shards, each
+// behind its own lock, known as a MultiQueue. An add goes to a random shard
+// whose lock is free, so producers only meet when they pick the same shard,
+// and with a few shards per thread that is rare. Every shard publishes its
+// smallest element in a volatile field, so a poll can choose a shard without
+// taking any lock.
+//
+// The queue has two ordering modes:
+//   strict:  poll() reads the smallest element of every shard and takes the
+//            smallest of them, so with no other thread around it returns the
+//            same element as PriorityQueue.poll() would. It costs a read per
+//            shard and polls of all threads meet on the shard holding the
+//            minimum, the price of exact order.
+//   relaxed: poll() picks two shards at random and takes the smaller of
+//            their two smallest elements. The result is not always the
+//            smallest element of the queue, but its rank is small on average
+//            and does not grow with the queue, and concurrent polls spread
+//            over the shards like adds do.
+// A poll only returns null once it saw every shard empty.
+//
+// Like SpscArrayQueue poll and peek return null when the queue is empty.
+// Null elements are not allowed.
+@SuppressWarnings("unchecked")
+public class ConcurrentPriorityQueue<T> {
+    private static final int DEFAULT_SHARDS_PER_THREAD = 2;
+
+    // HotSpot orders the fields declared by a class itself, longs first, but
+    // lays out the fields of a superclass before those of its subclasses. So
+    // the fields of a shard are kept off the cache lines of neighbouring
+    // objects by declaring them between a class of padding above and padding
+    // below, instead of next to padding fields in the same class
+    private static class ShardPadding {
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class ShardFields<T> extends ShardPadding {
+        final ReentrantLock lock = new ReentrantLock();
+        final PriorityQueue<T> heap;
+
+        // Only written while holding the lock
+        volatile Object top;
+        volatile int size;
+
+        ShardFields(Comparator<? super T> comparator) {
+            heap = new PriorityQueue<>(16, comparator, false);
+        }
+    }
+
+    // A heap and its lock, see ShardPadding
+    private static final class Shard<T> extends ShardFields<T> {
+        long q1, q2, q3, q4, q5, q6, q7;
+
+        Shard(Comparator<? super T> comparator) {
+            super(comparator);
+        }
+
+        // Must be called while holding the lock after changing the heap
+        void publish() {
+            top = heap.peek();
+            size = heap.size();
+        }
+    }
+
+    private final Shard<T>[] shards;
+    private final Comparator<? super T> comparator;
+    private final boolean strict;
+
+    // Create a relaxed queue with two shards per available processor
+    public ConcurrentPriorityQueue() {
+        this(false);
+    }
+
+    // Create a queue with two shards per available processor
+    public ConcurrentPriorityQueue(boolean strict) {
+        this(DEFAULT_SHARDS_PER_THREAD * Runtime.getRuntime().availableProcessors(), null, strict);
+    }
+
+    // Designated constructor, a null comparator means natural ordering. Use a
+    // few times as many shards as threads using the queue
+    public ConcurrentPriorityQueue(int shards, Comparator<? super T> comparator, boolean strict) {
+        if (shards <= 0) throw new IllegalArgumentException("Illegal shards: " + shards);
+        this.shards = (Shard<T>[]) new Shard<?>[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard<>(comparator);
+        }
+        this.comparator = comparator;
+        this.strict = strict;
+    }
+
+    public boolean isStrict() {
+        return strict;
+    }
+
+    // Return the number of elements, which is only exact while no other
+    // thread changes the queue, O(shards)
+    public int size() {
+        int size = 0;
+        for (Shard<T> shard : shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (Shard<T> shard : shards) {
+            if (shard.top != null) return false;
+        }
+        return true;
+    }
+
+    // Adds an element to a random shard whose lock is free, O(log(n)). After
+    // as many failed attempts as there are shards it waits for the lock of
+    // the last shard it tried instead of spinning on
+    public void add(T elem) {
+        if (elem == null) throw new IllegalArgumentException("Null element");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Shard<T> shard = null;
+        boolean locked = false;
+        for (int attempt = 0; attempt < shards.length && !locked; attempt++) {
+            shard = shards[random.nextInt(shards.length)];
+            locked = shard.lock.tryLock();
+        }
+        if (!locked) {
+            shard.lock.lock();
+        }
+        try {
+            shard.heap.add(elem);
+            shard.publish();
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    // Returns the smallest element, or null if the queue is empty, O(shards)
+    public T peek() {
+        Object smallest = null;
+        for (Shard<T> shard : shards) {
+            Object top = shard.top;
+            if (top != null && (smallest == null || compare(top, smallest) < 0)) {
+                smallest = top;
+            }
+        }
+        return (T) smallest;
+    }
+
+    // Removes the smallest element in strict mode, or one of the smallest in
+    // relaxed mode, see the comment at the top. Returns null if the queue is
+    // empty. O(log(n)) relaxed and O(shards + log(n)) strict
+    public T poll() {
+        if (!strict) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            // Give up on the two random choices once they keep finding empty
+            // or locked shards, which happens when the queue is almost empty
+            for (int attempt = 0; attempt < shards.length; attempt++) {
+                Shard<T> a = shards[random.nextInt(shards.length)];
+                Shard<T> b = shards[random.nextInt(shards.length)];
+                Object topA = a.top, topB = b.top;
+                if (topA == null && topB == null) continue;
+                Shard<T> shard = topB == null || (topA != null && compare(topA, topB) <= 0) ? a : b;
+                if (shard.lock.tryLock()) {
+                    try {
+                        T elem = shard.heap.poll();
+                        if (elem != null) {
+                            shard.publish();
+                            return elem;
+                        }
+                    } finally {
+                        shard.lock.unlock();
+                    }
+                }
+            }
+        }
+        return pollSmallest();
+    }
+
+    // Polls the shard whose smallest element is the smallest, retrying if
+    // another thread got to that element first
+    private T pollSmallest() {
+        for (;;) {
+            Shard<T> shard = smallestShard();
+            if (shard == null) return null;
+            Object top = shard.top;
+            shard.lock.lock();
+            try {
+                if (shard.top == top && top != null) {
+                    T elem = shard.heap.poll();
+                    shard.publish();
+                    return elem;
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    // Returns the shard with the smallest top, or null if all are empty
+    private Shard<T> smallestShard() {
+        Shard<T> smallest = null;
+        Object smallestTop = null;
+        for (Shard<T> shard : shards) {
+            Object top = shard.top;
+            if (top != null && (smallestTop == null || compare(top, smallestTop) < 0)) {
+                smallest = shard;
+                smallestTop = top;
+            }
+        }
+        return smallest;
+    }
+
+    // Compares two elements by the comparator or their natural order
+    private int compare(Object a, Object b) {
+        if (comparator != null) return comparator.compare((T) a, (T) b);
+        return ((Comparable<? super T>) a).compareTo((T) b);
+    }
+
+    @Override public String toString() {
+        return "ConcurrentPriorityQueue{shards=" + shards.length + ", strict=" + strict + ", size=" + size() + "}";
+    }
+}
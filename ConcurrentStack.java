@@ -0,0 +1,170 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// A thread-safe stack, see Stack. It is a Treiber stack: the elements are
+// linked from 'top' and push and pop swing 'top' with a compare-and-set, so
+// no thread ever holds a lock.
+//
+// Under contention the compare-and-set on 'top' fails often, so a thread whose
+// attempt failed backs off into an elimination array instead of retrying right
+// away. A push waits a short while in a random slot of the array and a pop
+// that comes by that slot takes its element directly, so the pair completes
+// without touching 'top' at all. Since a push followed by a pop leaves the
+// stack as it was, the pair can be ordered at the moment of the hand-off.
+//
+// Popped nodes are never reused by the stack, the garbage collector only
+// recycles a node once no thread can still be looking at it. That is what
+// keeps the compare-and-set safe from ABA: the 'top' a thread read cannot be
+// popped, freed and pushed again as the same node while it is not looking,
+// which is the problem a manually recycled node would need a stamp for.
+//
+// Elements may be null. The iterator and size() walk the nodes without
+// locking, so they are only a snapshot if no thread changes the stack.
+public class ConcurrentStack<T> implements Iterable<T> {
+    // How long a push waits in the elimination array for a pop
+    private static final int ELIMINATION_SPINS = 64;
+    private static final int MAXIMUM_ELIMINATION_SLOTS = 16;
+
+    private static final class Node<T> {
+        final T elem;
+        Node<T> next;
+
+        Node(T elem) {
+            this.elem = elem;
+        }
+    }
+
+    private final AtomicReference<Node<T>> top = new AtomicReference<>();
+
+    // Slots holding the node of a push waiting to be taken by a pop
+    private final AtomicReferenceArray<Node<T>> elimination;
+
+    // Create an empty stack
+    public ConcurrentStack() {
+        int slots = (Runtime.getRuntime().availableProcessors() + 1) / 2;
+        elimination = new AtomicReferenceArray<>(Math.min(MAXIMUM_ELIMINATION_SLOTS, slots));
+    }
+
+    // Create a stack with an initial element
+    public ConcurrentStack(T firstElem) {
+        this();
+        push(firstElem);
+    }
+
+    // Return the number of elements in the stack, this walks the whole stack
+    public int size() {
+        int size = 0;
+        for (Node<T> node = top.get(); node != null; node = node.next) {
+            size++;
+        }
+        return size;
+    }
+
+    // Check if the stack is empty
+    public boolean isEmpty() {
+        return top.get() == null;
+    }
+
+    // Push an element on the stack
+    public void push(T elem) {
+        Node<T> node = new Node<>(elem);
+        while (true) {
+            Node<T> current = top.get();
+            node.next = current;
+            if (top.compareAndSet(current, node) || eliminatePush(node)) {
+                return;
+            }
+        }
+    }
+
+    // Pop an element off the stack
+    // Throws an error if the stack is empty
+    public T pop() {
+        Node<T> node = popNode();
+        if (node == null) {
+            throw new java.util.EmptyStackException();
+        }
+        return node.elem;
+    }
+
+    // Pop an element off the stack or return null if it is empty,
+    // which saves an isEmpty() check that could be stale anyway
+    public T poll() {
+        Node<T> node = popNode();
+        return node == null ? null : node.elem;
+    }
+
+    // Peek at the top of the stack without removing an element
+    // Throws an exception if the stack is empty
+    public T peek() {
+        Node<T> node = top.get();
+        if (node == null) {
+            throw new java.util.EmptyStackException();
+        }
+        return node.elem;
+    }
+
+    // Returns the popped node or null if the stack was empty
+    private Node<T> popNode() {
+        while (true) {
+            Node<T> current = top.get();
+            if (current == null) {
+                return null;
+            }
+            if (top.compareAndSet(current, current.next)) {
+                return current;
+            }
+            Node<T> eliminated = eliminatePop();
+            if (eliminated != null) {
+                return eliminated;
+            }
+        }
+    }
+
+    // Offers the node to a pop in a random slot of the elimination array.
+    // Returns true if a pop took it, false if the push has to retry on 'top'
+    private boolean eliminatePush(Node<T> node) {
+        int slot = ThreadLocalRandom.current().nextInt(elimination.length());
+        if (!elimination.compareAndSet(slot, null, node)) {
+            return false;
+        }
+        for (int i = 0; i < ELIMINATION_SPINS; i++) {
+            if (elimination.get(slot) != node) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+        // Withdraw the offer, if that fails a pop took the node just now
+        return !elimination.compareAndSet(slot, node, null);
+    }
+
+    // Takes the node of a waiting push from a random slot, or returns null
+    private Node<T> eliminatePop() {
+        int slot = ThreadLocalRandom.current().nextInt(elimination.length());
+        Node<T> node = elimination.get(slot);
+        if (node != null && elimination.compareAndSet(slot, node, null)) {
+            return node;
+        }
+        return null;
+    }
+
+    // Iterates from the top of the stack to the bottom, unlike Stack
+    // which starts at the bottom, since that is the order of the links
+    @Override public java.util.Iterator<T> iterator() {
+        return new java.util.Iterator<T>() {
+            Node<T> node = top.get();
+
+            @Override public boolean hasNext() {
+                return node != null;
+            }
+
+            @Override public T next() {
+                if (node == null) throw new java.util.NoSuchElementException();
+                T elem = node.elem;
+                node = node.next;
+                return elem;
+            }
+        };
+    }
+}
@@ -0,0 +1,164 @@
+// A dynamic array of primitive doubles. This mirrors the API of Array<T> but
+// stores the values inline instead of boxing them, so every element costs 8
+// bytes instead of a pointer plus a 16 byte Double and scans over the backing
+// array are sequential memory reads.
+public class DoubleArray {
+    private double[] arr;
+    private int len = 0; // length user thinks array is
+    private int capacity = 0; // actual array size
+
+    // Some VMs reserve header words in an array
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    public DoubleArray() {
+        this(16);
+    }
+
+    public DoubleArray(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Illegal Capacity: " + capacity);
+        this.capacity = capacity;
+        arr = new double[capacity];
+    }
+
+    // Creates an array holding a copy of the given values
+    public DoubleArray(double[] values) {
+        this(values.length);
+        addAll(values);
+    }
+
+    public int size() {
+        return len;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public double get(int index) {
+        if (index < 0 || index >= len) throw new IndexOutOfBoundsException();
+        return arr[index];
+    }
+
+    public void set(int index, double elem) {
+        if (index < 0 || index >= len) throw new IndexOutOfBoundsException();
+        arr[index] = elem;
+    }
+
+    // There are no references to release so only the length is reset
+    public void clear() {
+        len = 0;
+    }
+
+    public void add(double elem) {
+        if (len == capacity) {
+            ensureCapacity(len + 1);
+        }
+        arr[len++] = elem;
+    }
+
+    // Appends all the values with at most a single resize
+    public void addAll(double[] values) {
+        if (values.length > capacity - len) {
+            ensureCapacity((int) Math.min(Integer.MAX_VALUE, (long) len + values.length));
+        }
+        System.arraycopy(values, 0, arr, len, values.length);
+        len += values.length;
+    }
+
+    // Grows the backing array, by doubling, so that at least
+    // 'minCapacity' elements fit without another resize. The doubling
+    // stops at the largest array size the VM can allocate
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity <= capacity) return;
+        if (minCapacity > MAX_ARRAY_SIZE) {
+            throw new OutOfMemoryError("Required array size too large: " + minCapacity);
+        }
+        int newCapacity = (int) Math.min(MAX_ARRAY_SIZE, Math.max(minCapacity, 2L * capacity));
+        arr = java.util.Arrays.copyOf(arr, newCapacity);
+        capacity = newCapacity;
+    }
+
+    // Shrinks the backing array to exactly the number of elements
+    public void trimToSize() {
+        if (len < capacity) {
+            arr = java.util.Arrays.copyOf(arr, len);
+            capacity = len;
+        }
+    }
+
+    // removes the element at the specified index in this array
+    public double removeAt(int rm_index) {
+        if (rm_index < 0 || rm_index >= len) {
+            throw new IndexOutOfBoundsException();
+        }
+        double data = arr[rm_index];
+        System.arraycopy(arr, rm_index + 1, arr, rm_index, len - rm_index - 1);
+        len--;
+        return data;
+    }
+
+    // removes the last element of this array, O(1)
+    public double removeLast() {
+        if (len == 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        return arr[--len];
+    }
+
+    // Removes the first element equal to 'elem', compared like indexOf
+    public boolean remove(double elem) {
+        int index = indexOf(elem);
+        if (index == -1) return false;
+        removeAt(index);
+        return true;
+    }
+
+    // Elements are compared by their bits like Double.equals() does, not with
+    // ==, so NaN is found and -0.0 does not match 0.0, the same as Array<Double>
+    public int indexOf(double elem) {
+        long bits = Double.doubleToLongBits(elem);
+        for (int i = 0; i < len; i++) {
+            if (Double.doubleToLongBits(arr[i]) == bits) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(double elem) {
+        return indexOf(elem) != -1;
+    }
+
+    // Returns a copy of the elements trimmed to the length of this array
+    public double[] toArray() {
+        return java.util.Arrays.copyOf(arr, len);
+    }
+
+    // Iterates without boxing, use nextDouble() rather than next()
+    public java.util.PrimitiveIterator.OfDouble iterator() {
+        return new java.util.PrimitiveIterator.OfDouble() {
+            int index = 0;
+
+            @Override public boolean hasNext() {
+                return index < len;
+            }
+
+            @Override public double nextDouble() {
+                if (index >= len) throw new java.util.NoSuchElementException();
+                return arr[index++];
+            }
+        };
+    }
+
+    @Override public String toString() {
+        if (len == 0) {
+            return "[]";
+        } else {
+            StringBuilder sb = new StringBuilder(len).append("[");
+            for (int i = 0; i < len - 1; i++) {
+                sb.append(arr[i]).append(", ");
+            }
+            return sb.append(arr[len - 1]).append("]").toString();
+        }
+    }
+}
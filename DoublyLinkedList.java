@@ -1,23 +1,58 @@
+// A doubly linked list. addFirst, addLast and insertAfter return the node of
+// the element they added, which works as a handle: passing it to unlink,
+// moveToFront, moveToBack or insertAfter later takes O(1) instead of the O(n)
+// search of remove(Object) or removeAt(int). A handle is only valid until its
+// element is removed from the list.
+//
+// A list created with a pool size keeps up to that many removed nodes on a
+// free list and reuses them for the next adds, so a list with a lot of churn
+// stops allocating a node per add. Since a pooled node comes back as the
+// handle of another element, a handle must not be used after its element was
+// removed, the list cannot tell the two apart.
 public class DoublyLinkedList<T> implements Iterable<T> {
     private int size = 0;
     private Node<T> head = null;
     private Node<T> tail = null;
 
-    // Internal node class to represent data
-    private class Node<T> {
-        T data;
-        Node<T> prev, next;
-        
-        public Node(T data, Node<T> prev, Node<T> next) {
+    // Removed nodes kept for reuse, linked through 'next'
+    private final int maxPooledNodes;
+    private Node<T> pool = null;
+    private int pooledNodes = 0;
+
+    // Node class to represent data, which is also the handle given out for it
+    public static class Node<T> {
+        private T data;
+        private Node<T> prev, next;
+
+        // The list the node is linked in, null once it was removed
+        private DoublyLinkedList<T> list;
+
+        private Node(T data, Node<T> prev, Node<T> next) {
             this.data = data;
             this.prev = prev;
             this.next = next;
         }
+
+        public T getData() {
+            return data;
+        }
+
         @Override public String toString() {
-            return data.toString();
+            return String.valueOf(data);
         }
     }
 
+    // Create a list that allocates a new node for every add
+    public DoublyLinkedList() {
+        this(0);
+    }
+
+    // Create a list that keeps up to 'maxPooledNodes' removed nodes for reuse
+    public DoublyLinkedList(int maxPooledNodes) {
+        if (maxPooledNodes < 0) throw new IllegalArgumentException("Illegal maxPooledNodes: " + maxPooledNodes);
+        this.maxPooledNodes = maxPooledNodes;
+    }
+
     // Empty this linked list, O(n)
     public void clear() {
         Node<T> trav = head;
@@ -26,6 +61,7 @@ public class DoublyLinkedList<T> implements Iterable<T> {
             trav.prev = null;
             trav.next = null;
             trav.data = null;
+            trav.list = null;
             trav = next;
         }
         head = null;
@@ -49,29 +85,116 @@ public class DoublyLinkedList<T> implements Iterable<T> {
     }
 
     // Add an element to the beginning of this linked list, O(1)
-    public void addFirst(T elem) {
+    // Returns the node of the element
+    public Node<T> addFirst(T elem) {
         // The linked list is empty
         if (isEmpty()) {
-            head = new Node<T>(elem, null, head);
+            head = newNode(elem, null, head);
             tail = head;
         } else {
-            head.prev = new Node<T>(elem, null, head);
+            head.prev = newNode(elem, null, head);
             head = head.prev;
         }
         size++;
+        return head;
     }
 
     // Add a node to the tail of the linked list, O(1)
-    public void addLast(T elem) {
+    // Returns the node of the element
+    public Node<T> addLast(T elem) {
         // The linked list is empty
         if (isEmpty()) {
-            head = new Node<T>(elem, null, null);
+            head = newNode(elem, null, null);
             tail = head;
         } else {
-            tail.next = new Node<T>(elem, tail, null);
+            tail.next = newNode(elem, tail, null);
             tail = tail.next;
         }
         size++;
+        return tail;
+    }
+
+    // Add an element right after the given node of this list, O(1)
+    // Returns the node of the element
+    public Node<T> insertAfter(Node<T> node, T elem) {
+        checkNode(node);
+        if (node == tail) return addLast(elem);
+        Node<T> added = newNode(elem, node, node.next);
+        node.next.prev = added;
+        node.next = added;
+        size++;
+        return added;
+    }
+
+    // Remove the element of the given node from this list, O(1)
+    public T unlink(Node<T> node) {
+        checkNode(node);
+        return remove(node);
+    }
+
+    // Move the given node to the beginning of this list, O(1)
+    public void moveToFront(Node<T> node) {
+        checkNode(node);
+        if (node == head) return;
+        detach(node);
+        node.next = head;
+        head.prev = node;
+        head = node;
+    }
+
+    // Move the given node to the end of this list, O(1)
+    public void moveToBack(Node<T> node) {
+        checkNode(node);
+        if (node == tail) return;
+        detach(node);
+        node.prev = tail;
+        tail.next = node;
+        tail = node;
+    }
+
+    private void checkNode(Node<T> node) {
+        if (node == null) throw new IllegalArgumentException("Null node");
+        if (node.list != this) throw new IllegalArgumentException("Node not in this list");
+    }
+
+    // Takes a node from the pool if there is one
+    private Node<T> newNode(T elem, Node<T> prev, Node<T> next) {
+        Node<T> node = pool;
+        if (node == null) {
+            node = new Node<T>(elem, prev, next);
+        } else {
+            pool = node.next;
+            pooledNodes--;
+            node.data = elem;
+            node.prev = prev;
+            node.next = next;
+        }
+        node.list = this;
+        return node;
+    }
+
+    // Clears a removed node and keeps it for reuse if the pool has room
+    private void recycle(Node<T> node) {
+        node.data = null;
+        node.prev = null;
+        node.list = null;
+        if (pooledNodes < maxPooledNodes) {
+            node.next = pool;
+            pool = node;
+            pooledNodes++;
+        } else {
+            node.next = null;
+        }
+    }
+
+    // Unlinks a node that is not the only one of the list from its
+    // neighbours, leaving its own links for the caller to reset
+    private void detach(Node<T> node) {
+        if (node.prev == null) head = node.next;
+        else node.prev.next = node.next;
+        if (node.next == null) tail = node.prev;
+        else node.next.prev = node.prev;
+        node.prev = node.next = null;
     }
 
     // Check the value of the first node if it exists, O(1)
@@ -97,6 +220,7 @@ public class DoublyLinkedList<T> implements Iterable<T> {
 
         // Extract the data at the head and move the
         // head pointer forwards one node
+        Node<T> node = head;
         T data = head.data;
         head = head.next;
         --size;
@@ -108,6 +232,7 @@ public class DoublyLinkedList<T> implements Iterable<T> {
         } else {
             head.prev = null;
         }
+        recycle(node);
 
         // Return the data that was at the first node we just removed
         return data;
@@ -120,6 +245,7 @@ public class DoublyLinkedList<T> implements Iterable<T> {
 
         // Extract the data at the tail and move the
         // tail pointer forwards one node
+        Node<T> node = tail;
         T data = tail.data;
         tail = tail.prev;
         --size;
@@ -131,6 +257,7 @@ public class DoublyLinkedList<T> implements Iterable<T> {
         } else {
             tail.next = null;
         }
+        recycle(node);
 
         // Return the data that was at the first node we just removed
         return data;
@@ -151,9 +278,8 @@ public class DoublyLinkedList<T> implements Iterable<T> {
         T data = node.data;
 
         // Memory cleanup
-        node.data = null;
-        node = node.prev = node.next = null;
-        
+        recycle(node);
+
         --size;
 
         // Return the data at the node we just removed
@@ -214,14 +340,14 @@ public class DoublyLinkedList<T> implements Iterable<T> {
 
         // Support searching for null
         if (obj == null) {
-            for (trav = head; trav != null; trav = trav.next) {
+            for (trav = head; trav != null; trav = trav.next, index++) {
                 if (trav.data == null) {
                     return index;
                 }
             }
         // Search for non null object
         } else {
-            for (trav = head; trav != null; trav = trav.next) {
+            for (trav = head; trav != null; trav = trav.next, index++) {
                 if (obj.equals(trav.data)) {
                     return index;
                 }
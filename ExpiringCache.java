@@ -0,0 +1,321 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// A thread-safe cache whose entries expire a given time after they were
+// written. The entries live in a ConcurrentHashTableSeparateChaining, so gets
+// never lock: a get checks the expiry time of the entry it finds and treats an
+// expired entry as missing.
+//
+// Expired entries are removed by a hierarchical timer wheel instead of a scan
+// of the table. The wheel is only touched while holding 'policyLock'. Rather
+// than taking that lock, writers append the entry they changed to a bounded
+// multi-producer ring buffer and then only try to take the lock. Whoever gets
+// it drains the buffer into the wheel and advances the wheel, removing the
+// entries that expired. A writer only blocks on the lock when the buffer is
+// full. Scheduling and expiring an entry are O(1) amortized: an entry is moved
+// down the wheel's levels at most once per level.
+//
+// The wheel's finest buckets span about a second, so an entry is removed up
+// to a second after it expired (gets never return it once it did). Expired
+// entries are also only removed as part of a write or of a get that found
+// one, so size() may count entries that expired but were not removed yet.
+// Keys and values may not be null.
+public class ExpiringCache<K, V> {
+    private static final int WRITE_BUFFER_SIZE = 1024;
+
+    // The wheel has a level per time span, each with a power of two number of
+    // buckets covering 2^SHIFT[i] nanoseconds each: about 1.07s, 1.14m, 1.22h,
+    // 1.63d and 6.5d. The buckets of a level together span exactly one bucket
+    // of the next level, BUCKETS[i] << SHIFT[i] == 1 << SHIFT[i + 1], so an
+    // entry placed in a level never wraps around to a bucket that comes due
+    // before it expires. Entries further out than the fourth level go into
+    // the single bucket of the last level and are moved down as time goes by
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final int[] SHIFT = {30, 36, 42, 47, 49};
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final long expiresAt;
+
+        // Set once the node is no longer mapped, before it is handed to the policy
+        volatile boolean retired;
+
+        // Links of the wheel bucket the node is in, guarded by 'policyLock'
+        Node<K, V> prev, next;
+
+        Node(K key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final ConcurrentHashTableSeparateChaining<K, Node<K, V>> map = new ConcurrentHashTableSeparateChaining<>();
+    private final long defaultTtlNanos;
+    private final LongSupplier ticker;
+
+    // The write buffer, producers claim a slot by incrementing 'writeIndex' and
+    // the drain empties the slots in order up to the first one not yet written
+    private final AtomicReferenceArray<Node<K, V>> writeBuffer = new AtomicReferenceArray<>(WRITE_BUFFER_SIZE);
+    private final AtomicLong writeIndex = new AtomicLong();
+    private volatile long readIndex;
+
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final Node<K, V>[][] wheel;
+    private long wheelTime;
+    private volatile long expirationCount;
+
+    public ExpiringCache(long defaultTtl, TimeUnit unit) {
+        this(defaultTtl, unit, System::nanoTime);
+    }
+
+    // 'ticker' returns the current time in nanoseconds, like System.nanoTime()
+    @SuppressWarnings("unchecked")
+    public ExpiringCache(long defaultTtl, TimeUnit unit, LongSupplier ticker) {
+        if (defaultTtl <= 0) {
+            throw new IllegalArgumentException("Illegal ttl: " + defaultTtl);
+        }
+        this.defaultTtlNanos = unit.toNanos(defaultTtl);
+        this.ticker = ticker;
+        wheelTime = ticker.getAsLong();
+
+        wheel = (Node<K, V>[][]) new Node<?, ?>[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = (Node<K, V>[]) new Node<?, ?>[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                Node<K, V> sentinel = new Node<>(null, null, 0);
+                sentinel.prev = sentinel.next = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    // Returns the number of mapped entries, which may include expired
+    // entries that were not removed yet
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Returns the number of entries removed because they expired
+    public long expirationCount() {
+        return expirationCount;
+    }
+
+    // Returns the value of the key or null if there is none or it expired
+    public V get(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (ticker.getAsLong() - node.expiresAt >= 0) {
+            // Remove the expired entries if no other thread is doing so already
+            tryMaintenance();
+            return null;
+        }
+        return node.value;
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    // Caches the value for the default time to live
+    public V put(K key, V value) {
+        return put(key, value, defaultTtlNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Caches the value until 'ttl' from now. Returns the previous value,
+    // or null if there was none or it had expired
+    public V put(K key, V value, long ttl, TimeUnit unit) {
+        if (value == null) throw new IllegalArgumentException("Null value");
+        if (ttl <= 0) throw new IllegalArgumentException("Illegal ttl: " + ttl);
+        long now = ticker.getAsLong();
+        Node<K, V> node = new Node<>(key, value, now + unit.toNanos(ttl));
+        Node<K, V> old = map.put(key, node);
+        afterWrite(node);
+        if (old == null) {
+            return null;
+        }
+        old.retired = true;
+        afterWrite(old);
+        return now - old.expiresAt >= 0 ? null : old.value;
+    }
+
+    // Removes the entry of the key and returns its value, or null
+    // if there was none or it had expired
+    public V remove(K key) {
+        Node<K, V> node = map.remove(key);
+        if (node == null) {
+            return null;
+        }
+        node.retired = true;
+        afterWrite(node);
+        return ticker.getAsLong() - node.expiresAt >= 0 ? null : node.value;
+    }
+
+    // Removes all entries
+    public void clear() {
+        policyLock.lock();
+        try {
+            for (K key : map.keys()) {
+                remove(key);
+            }
+            drainWriteBuffer();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Removes the entries that expired, up to the resolution of the wheel
+    public void cleanUp() {
+        policyLock.lock();
+        try {
+            maintenance();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Hands a node that was mapped or unmapped to the policy. When the buffer
+    // is full the writer waits for the lock and drains it itself, which keeps
+    // writers from outrunning the maintenance
+    private void afterWrite(Node<K, V> node) {
+        while (!offer(node)) {
+            cleanUp();
+        }
+        tryMaintenance();
+    }
+
+    private boolean offer(Node<K, V> node) {
+        while (true) {
+            long w = writeIndex.get();
+            if (w - readIndex >= WRITE_BUFFER_SIZE) {
+                return false;
+            }
+            if (writeIndex.compareAndSet(w, w + 1)) {
+                writeBuffer.lazySet((int) (w & (WRITE_BUFFER_SIZE - 1)), node);
+                return true;
+            }
+        }
+    }
+
+    private void tryMaintenance() {
+        if (policyLock.tryLock()) {
+            try {
+                maintenance();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    private void maintenance() {
+        drainWriteBuffer();
+        advanceWheel(ticker.getAsLong());
+    }
+
+    // Applies the buffered writes to the wheel. A node is scheduled when it is
+    // first seen mapped and descheduled when it is seen retired, in whichever
+    // order the two writes reach the buffer
+    private void drainWriteBuffer() {
+        long r = readIndex;
+        for (Node<K, V> node; (node = writeBuffer.get((int) (r & (WRITE_BUFFER_SIZE - 1)))) != null; r++) {
+            writeBuffer.lazySet((int) (r & (WRITE_BUFFER_SIZE - 1)), null);
+            if (node.retired) {
+                if (node.prev != null) {
+                    unlink(node);
+                }
+            } else if (node.prev == null) {
+                if (wheelTime - node.expiresAt >= 0) {
+                    expire(node);
+                } else {
+                    link(bucketOf(node.expiresAt), node);
+                }
+            }
+        }
+        readIndex = r;
+    }
+
+    // Returns the bucket of the first level whose span covers the time left
+    private Node<K, V> bucketOf(long time) {
+        long duration = time - wheelTime;
+        for (int i = 0; i < BUCKETS.length - 1; i++) {
+            if (duration < 1L << SHIFT[i + 1]) {
+                long ticks = time >> SHIFT[i];
+                return wheel[i][(int) (ticks & (BUCKETS[i] - 1))];
+            }
+        }
+        return wheel[BUCKETS.length - 1][0];
+    }
+
+    // Moves the wheel to the given time. On every level the buckets the time
+    // passed over are emptied: their expired nodes are removed and the rest
+    // are scheduled again, which puts them in a bucket of a lower level
+    private void advanceWheel(long now) {
+        long previous = wheelTime;
+        wheelTime = now;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            long previousTicks = previous >> SHIFT[i];
+            long currentTicks = now >> SHIFT[i];
+            if (currentTicks - previousTicks <= 0) {
+                break;
+            }
+            int mask = BUCKETS[i] - 1;
+            int steps = (int) Math.min(currentTicks - previousTicks + 1, BUCKETS[i]);
+            for (int j = 0; j < steps; j++) {
+                Node<K, V> sentinel = wheel[i][(int) ((previousTicks + j) & mask)];
+                Node<K, V> node = sentinel.next;
+                sentinel.prev = sentinel.next = sentinel;
+                while (node != sentinel) {
+                    Node<K, V> next = node.next;
+                    node.prev = node.next = null;
+                    if (now - node.expiresAt >= 0) {
+                        expire(node);
+                    } else {
+                        link(bucketOf(node.expiresAt), node);
+                    }
+                    node = next;
+                }
+            }
+        }
+    }
+
+    // Unmaps an expired node unless a write replaced it in the meantime
+    private void expire(Node<K, V> node) {
+        boolean[] removed = new boolean[1];
+        map.computeIfPresent(node.key, (key, current) -> {
+            if (current != node) return current;
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            node.retired = true;
+            expirationCount++;
+        }
+    }
+
+    private void link(Node<K, V> sentinel, Node<K, V> node) {
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    private void unlink(Node<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+    }
+
+    @Override public String toString() {
+        return "ExpiringCache{size=" + size() + ", expirations=" + expirationCount + "}";
+    }
+}
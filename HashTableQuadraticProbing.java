@@ -26,6 +26,18 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
     private static final int DEFAULT_CAPACITY = 8;
     private static final double DEFAULT_LOAD_FACTOR = 0.45;
 
+    // With incremental resizing enabled a resize only allocates the new tables.
+    // The keys of the old tables are then moved over a few at a time by the
+    // following writes, so no single insert pays for rehashing the whole table.
+    // A moved key leaves a tombstone behind so the probe sequences of the keys
+    // still in the old tables stay intact. Every key lives in exactly one table.
+    private static final int MIGRATION_STEP = 4;
+    private boolean incrementalResize = false;
+    private K[] oldKeyTable;
+    private V[] oldValueTable;
+    private int oldCapacity;
+    private int migrateIndex;
+
     public HashTableQuadraticProbing() {
         this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
     }
@@ -60,7 +72,7 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
 
     // Quadratic probing function (x^2+x)/2
     private static int P(int x) {
-        return (x*x + 2) >> 1;
+        return (x*x + x) >> 1;
     }
 
     // Converts a hash value to an index. Essentially, this strips the
@@ -69,12 +81,21 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
         return (keyHash & 0x7FFFFFFF) % capacity;
     }
 
+    // When enabled, resizing the table is spread over the writes that follow
+    // it: each insert/remove moves at most MIGRATION_STEP keys to the new
+    // tables. Lookups check both tables meanwhile
+    public void setIncrementalResize(boolean incrementalResize) {
+        this.incrementalResize = incrementalResize;
+    }
+
     // Clears all the contents of the hash-table
     public void clear() {
         for (int i = 0; i < capacity; i++) {
             keyTable[i] = null;
             valueTable[i] = null;
         }
+        oldKeyTable = null;
+        oldValueTable = null;
         keyCount = 0;
         usedBuckets = 0;
         modificationCount++;
@@ -105,11 +126,31 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
         if (key == null) {
             throw new IllegalArgumentException("Null key");
         }
+        return insert(key, key.hashCode(), val);
+    }
+
+    // Insert with the hash code of the key already computed
+    private V insert(K key, int keyHash, V val) {
         if (usedBuckets >= threshold) {
             resizeTable();
         }
 
-        final int hash = normalizeIndex(key.hashCode());
+        // While resizing, a key still in the old tables is moved over
+        // with its new value as part of the update
+        if (oldKeyTable != null) {
+            migrateStep();
+            int i = oldBucketOf(key);
+            if (i != -1) {
+                V oldValue = oldValueTable[i];
+                oldKeyTable[i] = TOMBSTONE;
+                oldValueTable[i] = null;
+                place(key, val);
+                modificationCount++;
+                return oldValue;
+            }
+        }
+
+        final int hash = normalizeIndex(keyHash);
         int i = hash;
         int j = -1;
         int x = 1;
@@ -118,7 +159,7 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
             // The current slot was previously deleted
             if (keyTable[i] == TOMBSTONE) {
                 if (j == -1) {
-                    j = 1;
+                    j = i;
                 }
             // The current cell already contains a key
             } else if (keyTable[i] != null) { 
@@ -144,6 +185,7 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
                     usedBuckets++;
                     keyCount++;
                     keyTable[i] = key;
+                    valueTable[i] = val;
                 } else {
                     keyCount++;
                     keyTable[j] = key;
@@ -156,6 +198,86 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
         } while (true);
     }
 
+    // Creates a table holding the given mappings, sized once for all of them.
+    // When a key appears more than once the last of its values wins
+    public static <K, V> HashTableQuadraticProbing<K, V> fromArrays(K[] keys, V[] values) {
+        return fromArrays(keys, values, false);
+    }
+
+    public static <K, V> HashTableQuadraticProbing<K, V> fromArrays(K[] keys, V[] values, boolean parallel) {
+        HashTableQuadraticProbing<K, V> table = new HashTableQuadraticProbing<>();
+        table.putAll(keys, values, parallel);
+        return table;
+    }
+
+    public static <K, V> HashTableQuadraticProbing<K, V> fromMap(Map<? extends K, ? extends V> map) {
+        HashTableQuadraticProbing<K, V> table = new HashTableQuadraticProbing<>();
+        table.putAll(map);
+        return table;
+    }
+
+    // 'expectedSize' is used to size the table up front, the
+    // table still grows if the stream holds more keys than that
+    public static <K, V> HashTableQuadraticProbing<K, V> fromStream(
+            java.util.stream.Stream<? extends Map.Entry<? extends K, ? extends V>> entries, int expectedSize) {
+        HashTableQuadraticProbing<K, V> table = new HashTableQuadraticProbing<>();
+        table.ensureCapacity(expectedSize);
+        entries.forEachOrdered(entry -> table.insert(entry.getKey(), entry.getValue()));
+        return table;
+    }
+
+    // Grows the table, in a single rehash, so that 'expectedSize'
+    // keys fit without any further resizing
+    public void ensureCapacity(int expectedSize) {
+        finishResize();
+        int newCapacity = capacity;
+        while ((int) (newCapacity * loadFactor) <= expectedSize && newCapacity < (1 << 30)) {
+            newCapacity *= 2;
+        }
+        if (newCapacity > capacity) {
+            resizeTable(newCapacity);
+            finishResize();
+        }
+    }
+
+    public void putAll(Map<? extends K, ? extends V> map) {
+        ensureCapacity(keyCount + map.size());
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            insert(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public void putAll(K[] keys, V[] values) {
+        putAll(keys, values, false);
+    }
+
+    // Puts keys[i] => values[i] for every i. The table is sized once for all
+    // the keys, so none of the inserts has to resize it, and the keys are
+    // hashed in a pass of their own. With 'parallel' that pass runs on the
+    // common ForkJoinPool. The placement itself stays sequential since a
+    // probe sequence can run through any bucket of the table
+    public void putAll(K[] keys, V[] values, boolean parallel) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Keys and values differ in length");
+        }
+        ensureCapacity(keyCount + keys.length);
+
+        int[] hashes = new int[keys.length];
+        java.util.function.IntUnaryOperator hash = i -> {
+            if (keys[i] == null) throw new IllegalArgumentException("Null key");
+            return keys[i].hashCode();
+        };
+        if (parallel) {
+            Arrays.parallelSetAll(hashes, hash);
+        } else {
+            Arrays.setAll(hashes, hash);
+        }
+
+        for (int i = 0; i < keys.length; i++) {
+            insert(keys[i], hashes[i], values[i]);
+        }
+    }
+
     // Returns true/false on whether a given key exists within the hash-table
     public boolean contains(K key) {
         return hasKey(key);
@@ -213,6 +335,14 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
                     }
                 }
             } else {
+                // The key may not have been moved out of the old tables yet
+                if (oldKeyTable != null) {
+                    int k = oldBucketOf(key);
+                    if (k != -1) {
+                        containsFlag = true;
+                        return oldValueTable[k];
+                    }
+                }
                 containsFlag = false;
                 return null;
             }
@@ -228,6 +358,19 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
             throw new IllegalArgumentException("Null key");
         }
 
+        if (oldKeyTable != null) {
+            migrateStep();
+            int i = oldBucketOf(key);
+            if (i != -1) {
+                keyCount--;
+                modificationCount++;
+                V oldValue = oldValueTable[i];
+                oldKeyTable[i] = TOMBSTONE;
+                oldValueTable[i] = null;
+                return oldValue;
+            }
+        }
+
         final int hash = normalizeIndex(key.hashCode());
         int i = hash;
         int x = 1;
@@ -261,57 +404,127 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
     // Returns a list of keys found in the hash table
     public List<K> keys() {
         List<K> keys = new ArrayList<>(size());
-        for (int i = 0; i < capacity; i++) {
-            if (keyTable[i] != null && keyTable[i] != TOMBSTONE) {
-                keys.add(keyTable[i]);
+        for (int i = 0; i < slotCount(); i++) {
+            if (keyAt(i) != null && keyAt(i) != TOMBSTONE) {
+                keys.add(keyAt(i));
             }
         }
         return keys;
     }
 
     // Returns a list of non-unique values found in the hash table
-    public List<K> values() {
-        List<K> values = new ArrayList<>(size());
-        for (int i = 0; i < capacity; i++) {
-            if (keyTable[i] != null && keyTable[i] != TOMBSTONE) {
-                values.add(keyTable[i]);
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        for (int i = 0; i < slotCount(); i++) {
+            if (keyAt(i) != null && keyAt(i) != TOMBSTONE) {
+                values.add(valueAt(i));
             }
         }
         return values;
     }
 
+    // Number of slots visible to the iterators, the slots past 'capacity'
+    // are the ones of the old tables during an incremental resize
+    private int slotCount() {
+        return (oldKeyTable == null) ? capacity : capacity + oldCapacity;
+    }
+
+    private K keyAt(int index) {
+        return index < capacity ? keyTable[index] : oldKeyTable[index - capacity];
+    }
+
+    private V valueAt(int index) {
+        return index < capacity ? valueTable[index] : oldValueTable[index - capacity];
+    }
+
     // Double the size of the hash-table
     private void resizeTable() {
-        capacity *= 2;
-        threshold = (int) (capacity * loadFactor);
+        resizeTable(capacity * 2);
+    }
 
-        K[] oldKeyTable = (K[]) new Object[capacity];
-        V[] oldValueTable = (V[]) new Object[capacity];
+    // Moves the keys to tables of the given capacity. The keys are placed
+    // again from their hash, so any power of two above the capacity works
+    private void resizeTable(int newCapacity) {
+        // A previous incremental resize has to be done before the next one starts
+        finishResize();
 
-        // Perform key table pointer swap
-        K[] keyTableTmp = keyTable;
-        keyTable = oldKeyTable;
-        oldKeyTable = keyTableTmp;
+        oldKeyTable = keyTable;
+        oldValueTable = valueTable;
+        oldCapacity = capacity;
+        migrateIndex = 0;
 
-        // Perform value table pointer swap
-        V[] valueTableTmp = valueTable;
-        valueTable = oldValueTable;
-        oldValueTable = valueTableTmp;
+        capacity = newCapacity;
+        threshold = (int) (capacity * loadFactor);
+        keyTable = (K[]) new Object[capacity];
+        valueTable = (V[]) new Object[capacity];
 
-        // Reset the key count and buckets used since we are about to
-        // re-insert all the keys into the hash-table
-        keyCount = 0;
+        // Only the buckets of the new tables are counted, the keys are
+        // counted as used again as they are moved over
         usedBuckets = 0;
 
-        for (int i = 0; i < oldKeyTable.length; i++) {
-            if (oldKeyTable[i] != null && oldKeyTable != TOMBSTONE) {
-                insert(oldKeyTable[i], oldValueTable[i]);
+        if (!incrementalResize) {
+            finishResize();
+        }
+    }
+
+    private void finishResize() {
+        while (oldKeyTable != null) {
+            migrateStep();
+        }
+    }
+
+    // Moves the next MIGRATION_STEP keys of the old tables, looking at no more
+    // than ten times as many empty slots, and drops the old tables when done.
+    // A full resize is simply this step repeated until the old tables are gone
+    private void migrateStep() {
+        int moved = 0;
+        int visitsLeft = incrementalResize ? MIGRATION_STEP * 10 : Integer.MAX_VALUE;
+        while (migrateIndex < oldCapacity && visitsLeft-- > 0) {
+            int i = migrateIndex++;
+            if (oldKeyTable[i] != null && oldKeyTable[i] != TOMBSTONE) {
+                place(oldKeyTable[i], oldValueTable[i]);
+                oldKeyTable[i] = TOMBSTONE;
+                oldValueTable[i] = null;
+                if (incrementalResize && ++moved == MIGRATION_STEP) {
+                    break;
+                }
             }
-            oldValueTable[i] = null;
-            oldKeyTable[i] = null; 
+        }
+        if (moved > 0) {
+            modificationCount++;
+        }
+        if (migrateIndex == oldCapacity) {
+            oldKeyTable = null;
+            oldValueTable = null;
         }
     }
 
+    // Puts a key which is known not to be in the new tables into the first
+    // free or deleted bucket of its probe sequence
+    private void place(K key, V val) {
+        final int hash = normalizeIndex(key.hashCode());
+        int i = hash;
+        for (int x = 1; keyTable[i] != null && keyTable[i] != TOMBSTONE; i = normalizeIndex(hash + P(x++)));
+        if (keyTable[i] == null) {
+            usedBuckets++;
+        }
+        keyTable[i] = key;
+        valueTable[i] = val;
+    }
+
+    // Returns the bucket of the key in the old tables or -1 if it is not there
+    private int oldBucketOf(K key) {
+        if (oldKeyTable == null) return -1;
+        final int hash = (key.hashCode() & 0x7FFFFFFF) % oldCapacity;
+        int i = hash;
+        for (int x = 1; oldKeyTable[i] != null; i = ((hash + P(x++)) & 0x7FFFFFFF) % oldCapacity) {
+            if (oldKeyTable[i] != TOMBSTONE && oldKeyTable[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Override public java.util.Iterator<K> iterator() {
         // Before the iteration begins record the number of modifications
         // done to the hash-table. This value should not change as we iterate
@@ -332,11 +545,11 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
 
             // Find the next element and return it
             @Override public K next() {
-                while (keyTable[index] != null || keyTable[index] != TOMBSTONE) {
+                while (keyAt(index) == null || keyAt(index) == TOMBSTONE) {
                     index++;
                 }
                 keysLeft--;
-                return keyTable[index++];
+                return keyAt(index++);
             }
 
             @Override public void remove() {
@@ -348,9 +561,9 @@ public class HashTableQuadraticProbing<K, V> implements Iterable<K> {
     @Override public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("{");
-        for (int i = 0; i < capacity; i++) {
-            if (keyTable[i] != null && keyTable[i] != TOMBSTONE) {
-                sb.append(keyTable[i] + " => " + valueTable[i] + ", ");
+        for (int i = 0; i < slotCount(); i++) {
+            if (keyAt(i) != null && keyAt(i) != TOMBSTONE) {
+                sb.append(keyAt(i) + " => " + valueAt(i) + ", ");
             }
         }
         sb.append("}");
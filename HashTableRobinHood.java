@@ -0,0 +1,366 @@
+import java.util.*;
+
+// A hash-table using open addressing with linear probing and Robin Hood
+// hashing. On insertion an entry that is further from its home bucket takes
+// the slot of an entry that is closer to its own ("takes from the rich"),
+// which keeps the variance of the probe lengths low. Removals use backward
+// shift deletion instead of tombstones: the entries following the removed
+// one are moved back a slot until one is found that is already in its home
+// bucket. Without tombstones the table never degrades under churn and only
+// ever needs to be resized because of the live key count.
+@SuppressWarnings("unchecked")
+public class HashTableRobinHood<K, V> implements Iterable<K> {
+    private double loadFactor;
+    private int capacity;
+    private int threshold;
+    private int modificationCount = 0;
+    private int keyCount = 0;
+
+    // These arrays store the key-value pairs, a null key marks an empty bucket
+    private K[] keyTable;
+    private V[] valueTable;
+
+    // The spread hash of the key in each bucket. Caching it avoids calling
+    // hashCode() while probing and lets us skip most equals() calls
+    private int[] hashTable;
+
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    public HashTableRobinHood() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public HashTableRobinHood(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    // Designated constructor
+    public HashTableRobinHood(int capacity, double loadFactor) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        // Open addressing always needs a free bucket to terminate a probe
+        if (loadFactor <= 0 || loadFactor >= 1 || Double.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal loadFactor: " + loadFactor);
+        }
+
+        this.loadFactor = loadFactor;
+        this.capacity = Math.max(DEFAULT_CAPACITY, next2Power(capacity));
+        threshold = (int) (this.capacity * this.loadFactor);
+
+        keyTable = (K[]) new Object[this.capacity];
+        valueTable = (V[]) new Object[this.capacity];
+        hashTable = new int[this.capacity];
+    }
+
+    // Given a number this method finds the next
+    // power of two above this value
+    private static int next2Power(int n) {
+        return Integer.highestOneBit(n) << 1;
+    }
+
+    // Linear probing is sensitive to clustering so the bits of the
+    // hash code are mixed before they are masked to an index
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // The distance of the entry in bucket i from its home bucket
+    private int probeLength(int i) {
+        return (i - (hashTable[i] & (capacity - 1))) & (capacity - 1);
+    }
+
+    // Clears all the contents of the hash-table
+    public void clear() {
+        Arrays.fill(keyTable, null);
+        Arrays.fill(valueTable, null);
+        keyCount = 0;
+        modificationCount++;
+    }
+
+    // Returns the number of keys currently inside the hash-table
+    public int size() {
+        return keyCount;
+    }
+
+    // Returns true/false depending on whether the hash-table is empty
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    // Insert, put and add all place a value in the hash-table
+    public V put(K key, V value) {
+        return insert(key, value);
+    }
+
+    public V add(K key, V value) {
+        return insert(key, value);
+    }
+
+    // Place a key-value pair into the hash-table. If the value already
+    // exists inside the hash-table then the value is updated
+    public V insert(K key, V val) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key");
+        }
+        if (keyCount >= threshold) {
+            resizeTable();
+        }
+
+        final int mask = capacity - 1;
+        int hash = hash(key);
+        int i = hash & mask;
+        boolean displaced = false;
+
+        for (int dist = 0; ; i = (i + 1) & mask, dist++) {
+            // Empty bucket, the entry we're carrying goes here
+            if (keyTable[i] == null) {
+                keyTable[i] = key;
+                valueTable[i] = val;
+                hashTable[i] = hash;
+                keyCount++;
+                modificationCount++;
+                return null;
+            }
+
+            // The key already exists, this can only happen before we displaced
+            // an entry since every entry we pick up afterwards is unique
+            if (!displaced && hashTable[i] == hash && keyTable[i].equals(key)) {
+                V oldValue = valueTable[i];
+                valueTable[i] = val;
+                modificationCount++;
+                return oldValue;
+            }
+
+            // The resident is closer to its home than we are to ours, so it
+            // gives up its bucket and we carry on inserting the resident
+            int residentDist = probeLength(i);
+            if (residentDist < dist) {
+                K k = keyTable[i];
+                V v = valueTable[i];
+                int h = hashTable[i];
+                keyTable[i] = key;
+                valueTable[i] = val;
+                hashTable[i] = hash;
+                key = k;
+                val = v;
+                hash = h;
+                dist = residentDist;
+                displaced = true;
+            }
+        }
+    }
+
+    // Returns the bucket the key is in or -1 if the key does not exist
+    private int bucketOf(K key) {
+        if (key == null) throw new IllegalArgumentException("Null key");
+        final int mask = capacity - 1;
+        final int hash = hash(key);
+        int i = hash & mask;
+
+        // Because of the Robin Hood invariant we can stop as soon as we reach an
+        // entry closer to its home than we are to ours, our key would be here
+        for (int dist = 0; keyTable[i] != null && probeLength(i) >= dist; i = (i + 1) & mask, dist++) {
+            if (hashTable[i] == hash && keyTable[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Returns true/false on whether a given key exists within the hash-table
+    public boolean contains(K key) {
+        return hasKey(key);
+    }
+
+    public boolean hasKey(K key) {
+        return bucketOf(key) != -1;
+    }
+
+    // Get the value associated with the input key.
+    // NOTE: returns null if the value is null AND also returns
+    // null if the key does not exist
+    public V get(K key) {
+        int i = bucketOf(key);
+        return i == -1 ? null : valueTable[i];
+    }
+
+    // Removes a key from the map and returns the value.
+    // NOTE: returns null if the value is null AND also returns
+    // null if the key does not exist
+    public V remove(K key) {
+        int i = bucketOf(key);
+        if (i == -1) {
+            return null;
+        }
+        V oldValue = valueTable[i];
+
+        // Backward shift deletion, move the following entries back one bucket
+        // until we reach an empty bucket or an entry already in its home bucket
+        final int mask = capacity - 1;
+        for (int j = (i + 1) & mask; keyTable[j] != null && probeLength(j) > 0; i = j, j = (j + 1) & mask) {
+            keyTable[i] = keyTable[j];
+            valueTable[i] = valueTable[j];
+            hashTable[i] = hashTable[j];
+        }
+        keyTable[i] = null;
+        valueTable[i] = null;
+
+        keyCount--;
+        modificationCount++;
+        return oldValue;
+    }
+
+    // Returns a list of keys found in the hash table
+    public List<K> keys() {
+        List<K> keys = new ArrayList<>(size());
+        for (int i = 0; i < capacity; i++) {
+            if (keyTable[i] != null) {
+                keys.add(keyTable[i]);
+            }
+        }
+        return keys;
+    }
+
+    // Returns a list of non-unique values found in the hash table
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        for (int i = 0; i < capacity; i++) {
+            if (keyTable[i] != null) {
+                values.add(valueTable[i]);
+            }
+        }
+        return values;
+    }
+
+    // Returns the longest distance of any entry from its home bucket, O(n)
+    public int maxProbeLength() {
+        int max = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (keyTable[i] != null) {
+                max = Math.max(max, probeLength(i));
+            }
+        }
+        return max;
+    }
+
+    // Returns the mean distance of the entries from their home bucket, O(n)
+    public double averageProbeLength() {
+        if (keyCount == 0) return 0;
+        long total = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (keyTable[i] != null) {
+                total += probeLength(i);
+            }
+        }
+        return (double) total / keyCount;
+    }
+
+    // Returns a histogram where index d holds the number of entries
+    // that are d buckets away from their home bucket, O(n)
+    public int[] probeLengthHistogram() {
+        int[] histogram = new int[maxProbeLength() + 1];
+        for (int i = 0; i < capacity; i++) {
+            if (keyTable[i] != null) {
+                histogram[probeLength(i)]++;
+            }
+        }
+        return histogram;
+    }
+
+    // Double the size of the hash-table. Entries are placed by their cached
+    // hash, so hashCode() is not called again
+    private void resizeTable() {
+        K[] oldKeyTable = keyTable;
+        V[] oldValueTable = valueTable;
+        int[] oldHashTable = hashTable;
+
+        capacity *= 2;
+        threshold = (int) (capacity * loadFactor);
+        keyTable = (K[]) new Object[capacity];
+        valueTable = (V[]) new Object[capacity];
+        hashTable = new int[capacity];
+
+        for (int i = 0; i < oldKeyTable.length; i++) {
+            if (oldKeyTable[i] != null) {
+                place(oldKeyTable[i], oldValueTable[i], oldHashTable[i]);
+            }
+        }
+    }
+
+    // Robin Hood insertion of a key known not to be in the table, so no
+    // bucket has to be compared with it
+    private void place(K key, V val, int hash) {
+        final int mask = capacity - 1;
+        int i = hash & mask;
+        for (int dist = 0; ; i = (i + 1) & mask, dist++) {
+            if (keyTable[i] == null) {
+                keyTable[i] = key;
+                valueTable[i] = val;
+                hashTable[i] = hash;
+                return;
+            }
+            int residentDist = probeLength(i);
+            if (residentDist < dist) {
+                K k = keyTable[i];
+                V v = valueTable[i];
+                int h = hashTable[i];
+                keyTable[i] = key;
+                valueTable[i] = val;
+                hashTable[i] = hash;
+                key = k;
+                val = v;
+                hash = h;
+                dist = residentDist;
+            }
+        }
+    }
+
+    @Override public java.util.Iterator<K> iterator() {
+        // Before the iteration begins record the number of modifications
+        // done to the hash-table. This value should not change as we iterate
+        // otherwise a concurrent modification has occurred
+        final int MODIFICATION_COUNT = modificationCount;
+
+        return new java.util.Iterator<K>() {
+            int keysLeft = keyCount;
+            int index = 0;
+
+            @Override public boolean hasNext() {
+                // The contents of the table have been altered
+                if (MODIFICATION_COUNT != modificationCount) {
+                    throw new java.util.ConcurrentModificationException();
+                }
+                return keysLeft != 0;
+            }
+
+            // Find the next element and return it
+            @Override public K next() {
+                if (!hasNext()) throw new java.util.NoSuchElementException();
+                while (keyTable[index] == null) {
+                    index++;
+                }
+                keysLeft--;
+                return keyTable[index++];
+            }
+
+            @Override public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        for (int i = 0; i < capacity; i++) {
+            if (keyTable[i] != null) {
+                sb.append(keyTable[i] + " => " + valueTable[i] + ", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -5,6 +5,10 @@ class Entry<K, V> {
     K key;
     V value;
 
+    // The next entry in the same bucket, chains are intrusive so a
+    // mapping costs a single object
+    Entry<K, V> next;
+
     public Entry(K key, V value) {
         this.key = key;
         this.value = value;
@@ -25,16 +29,245 @@ class Entry<K, V> {
     }
 }
 
+// A bucket whose entries are kept in an AVL tree instead of a chain, used when
+// many keys collide in one bucket. Entries are ordered by their hash and then
+// by the natural ordering of their keys, which must all be of the same class
+// 'keyClass' implementing Comparable of itself. The ordering need not be
+// consistent with equals: distinct keys that compare as equal are all kept,
+// and a lookup that meets such a tie checks equals and searches both sides
+// of it. The rotations are the ones of AVLTreeRecursive.
+@SuppressWarnings("unchecked")
+class TreeBucket<K, V> {
+    final Class<?> keyClass;
+    private Node root;
+    private int size = 0;
+
+    private class Node {
+        Entry<K, V> entry;
+        int height;
+        Node left, right;
+
+        Node(Entry<K, V> entry) {
+            this.entry = entry;
+        }
+    }
+
+    TreeBucket(Class<?> keyClass) {
+        this.keyClass = keyClass;
+    }
+
+    // Returns the class every key must share for the bucket to be treeified,
+    // or null unless the class of the key is declared as Comparable of itself,
+    // like HashMap does. A class implementing Comparable<Other> does not count
+    static Class<?> comparableClassOf(Object key) {
+        if (!(key instanceof Comparable)) return null;
+        Class<?> c = key.getClass();
+        if (c == String.class) return c;
+        for (java.lang.reflect.Type type : c.getGenericInterfaces()) {
+            if (type instanceof java.lang.reflect.ParameterizedType) {
+                java.lang.reflect.ParameterizedType p = (java.lang.reflect.ParameterizedType) type;
+                java.lang.reflect.Type[] args = p.getActualTypeArguments();
+                if (p.getRawType() == Comparable.class && args.length == 1 && args[0] == c) {
+                    return c;
+                }
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int compare(int hash, K key, Entry<K, V> entry) {
+        int cmp = Integer.compare(hash, entry.hash);
+        return cmp != 0 ? cmp : ((Comparable<Object>) key).compareTo(entry.key);
+    }
+
+    // Finds the entry for the key or null if it does not exist, O(log(n))
+    // unless many distinct keys compare as equal
+    Entry<K, V> get(int hash, K key) {
+        return find(root, hash, key);
+    }
+
+    private Entry<K, V> find(Node node, int hash, K key) {
+        while (node != null) {
+            int cmp = compare(hash, key, node.entry);
+            if (cmp == 0) {
+                if (key.equals(node.entry.key)) return node.entry;
+                // Keys tied with this one may be on either side
+                Entry<K, V> entry = find(node.left, hash, key);
+                return entry != null ? entry : find(node.right, hash, key);
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    // Tests if the very entry is in the subtree, searching both sides of ties
+    private boolean contains(Node node, Entry<K, V> entry) {
+        while (node != null) {
+            if (node.entry == entry) return true;
+            int cmp = compare(entry.hash, entry.key, node.entry);
+            if (cmp == 0) {
+                return contains(node.left, entry) || contains(node.right, entry);
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    // Inserts an entry whose key is not in the tree yet, O(log(n))
+    void insert(Entry<K, V> entry) {
+        root = insert(root, entry);
+        size++;
+    }
+
+    private Node insert(Node node, Entry<K, V> entry) {
+        if (node == null) {
+            return new Node(entry);
+        }
+        if (compare(entry.hash, entry.key, node.entry) < 0) {
+            node.left = insert(node.left, entry);
+        } else {
+            node.right = insert(node.right, entry);
+        }
+        update(node);
+        return balance(node);
+    }
+
+    // Removes and returns the entry for the key if it exists, O(log(n))
+    Entry<K, V> remove(int hash, K key) {
+        Entry<K, V> entry = get(hash, key);
+        if (entry != null) {
+            root = remove(root, entry);
+            size--;
+        }
+        return entry;
+    }
+
+    private Node remove(Node node, Entry<K, V> entry) {
+        int cmp = compare(entry.hash, entry.key, node.entry);
+        if (cmp == 0 && node.entry != entry) {
+            // A distinct key tied with the one being removed
+            cmp = contains(node.left, entry) ? -1 : 1;
+        }
+        if (cmp < 0) {
+            node.left = remove(node.left, entry);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, entry);
+        } else {
+            if (node.left == null) return node.right;
+            if (node.right == null) return node.left;
+
+            // Replace the entry with its successor from the taller subtree
+            if (node.left.height > node.right.height) {
+                Node pred = node.left;
+                while (pred.right != null) pred = pred.right;
+                node.entry = pred.entry;
+                node.left = remove(node.left, pred.entry);
+            } else {
+                Node succ = node.right;
+                while (succ.left != null) succ = succ.left;
+                node.entry = succ.entry;
+                node.right = remove(node.right, succ.entry);
+            }
+        }
+        update(node);
+        return balance(node);
+    }
+
+    private static int height(TreeBucket<?, ?>.Node node) {
+        return node == null ? -1 : node.height;
+    }
+
+    // Update a node's height
+    private void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    // Re-balance a node if its balance factor is +2 or -2
+    private Node balance(Node node) {
+        int bf = height(node.right) - height(node.left);
+        if (bf == -2) {
+            if (height(node.left.right) > height(node.left.left)) {
+                node.left = leftRotation(node.left);
+            }
+            return rightRotation(node);
+        } else if (bf == +2) {
+            if (height(node.right.left) > height(node.right.right)) {
+                node.right = rightRotation(node.right);
+            }
+            return leftRotation(node);
+        }
+        return node;
+    }
+
+    private Node leftRotation(Node node) {
+        Node newParent = node.right;
+        node.right = newParent.left;
+        newParent.left = node;
+        update(node);
+        update(newParent);
+        return newParent;
+    }
+
+    private Node rightRotation(Node node) {
+        Node newParent = node.left;
+        node.left = newParent.right;
+        newParent.right = node;
+        update(node);
+        update(newParent);
+        return newParent;
+    }
+
+    // Returns the entries of the tree in order
+    List<Entry<K, V>> entries() {
+        List<Entry<K, V>> entries = new ArrayList<>(size);
+        collect(root, entries);
+        return entries;
+    }
+
+    private void collect(Node node, List<Entry<K, V>> entries) {
+        if (node == null) return;
+        collect(node.left, entries);
+        entries.add(node.entry);
+        collect(node.right, entries);
+    }
+}
+
 @SuppressWarnings("unchecked")
 public class HashTableSeparateChaining<K, V> implements Iterable<K> {
     private static final int DEFAULT_CAPACITY = 3;
     private static final double DEFAULT_LOAD_FACTOR = 0.75;
+    private static final int DEFAULT_TREEIFY_THRESHOLD = 8;
 
     private double maxLoadFactor;
     private int capacity = 0;
     private int threshold = 0;
     private int size = 0;
-    private LinkedList<Entry<K, V>>[] table;
+    private Entry<K, V>[] table;
+
+    // Buckets holding more than 'treeifyThreshold' entries with Comparable keys
+    // are moved out of 'table' into an AVL tree in 'trees', which bounds the cost
+    // of a lookup in a bucket to O(log(n)) even when every hash collides. A tree
+    // is turned back into a chain once it shrinks to 'untreeifyThreshold'.
+    // 'trees' is only allocated once the first bucket gets treeified.
+    private int treeifyThreshold;
+    private int untreeifyThreshold;
+    private TreeBucket<K, V>[] trees;
+
+    // With incremental resizing enabled a resize only allocates the new table.
+    // The buckets of 'oldTable' are then moved over a few at a time by the
+    // following writes, so no single put pays for rehashing the whole table.
+    // A bucket of 'oldTable' is emptied once it has been moved, so a key is
+    // in 'oldTable' if and only if its old bucket is not empty.
+    private static final int MIGRATION_STEP = 4;
+    private boolean incrementalResize = false;
+    private Entry<K, V>[] oldTable;
+    private TreeBucket<K, V>[] oldTrees;
+    private int oldCapacity;
+    private int migrateIndex;
 
     public HashTableSeparateChaining() {
         this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
@@ -45,16 +278,25 @@ public class HashTableSeparateChaining<K, V> implements Iterable<K> {
     }
 
     public HashTableSeparateChaining(int capacity, double maxLoadFactor) {
+        this(capacity, maxLoadFactor, DEFAULT_TREEIFY_THRESHOLD);
+    }
+
+    public HashTableSeparateChaining(int capacity, double maxLoadFactor, int treeifyThreshold) {
         if (capacity < 0) {
             throw new IllegalArgumentException("Illegal Capacity");
         }
         if (maxLoadFactor <= 0 || Double.isNaN(maxLoadFactor) || Double.isInfinite(maxLoadFactor)) {
             throw new IllegalArgumentException("Illegal maxLoadFactor");
         }
+        if (treeifyThreshold < 2) {
+            throw new IllegalArgumentException("Illegal treeifyThreshold");
+        }
         this.maxLoadFactor = maxLoadFactor;
+        this.treeifyThreshold = treeifyThreshold;
+        this.untreeifyThreshold = treeifyThreshold * 3 / 4;
         this.capacity = Math.max(DEFAULT_CAPACITY, capacity);
         threshold = (int) (this.capacity * maxLoadFactor);
-        table = new LinkedList[this.capacity];
+        table = newTable(this.capacity);
     }
 
     // Returns the number of elements currently inside the hash-table
@@ -73,9 +315,19 @@ public class HashTableSeparateChaining<K, V> implements Iterable<K> {
         return (hashKey & 0x7FFFFFFF) % capacity;
     }
 
+    // When enabled, resizing the table is spread over the writes that follow
+    // it: each put/remove moves at most MIGRATION_STEP buckets (plus the bucket
+    // of its own key) to the new table. Lookups check both tables meanwhile
+    public void setIncrementalResize(boolean incrementalResize) {
+        this.incrementalResize = incrementalResize;
+    }
+
     // Clears all the contents of the hash-table
     public void clear() {
         Arrays.fill(table, null);
+        trees = null;
+        oldTable = null;
+        oldTrees = null;
         size = 0;
     }
 
@@ -84,8 +336,7 @@ public class HashTableSeparateChaining<K, V> implements Iterable<K> {
     }
 
     public boolean hasKey(K key) {
-        int bucketIndex = normalizeIndex(key.hashCode());
-        return bucketSeekEntry(bucketIndex, key) != null;
+        return seekEntry(key) != null;
     }
 
     // Insert, put and add all place a value in the hash-table
@@ -99,6 +350,7 @@ public class HashTableSeparateChaining<K, V> implements Iterable<K> {
 
     public V insert(K key, V value) {
         Entry<K, V> newEntry = new Entry<>(key, value);
+        migrateBeforeWrite(newEntry.hash);
         int bucketIndex = normalizeIndex(newEntry.hash);
         return bucketInsertEntry(bucketIndex, newEntry);
     }
@@ -108,8 +360,7 @@ public class HashTableSeparateChaining<K, V> implements Iterable<K> {
     // null if the key does not exist, so watch out...
     public V get(K key) {
         if (key == null) return null;
-        int bucketIndex = normalizeIndex(key.hashCode());
-        Entry<K, V> entry = bucketSeekEntry(bucketIndex, key);
+        Entry<K, V> entry = seekEntry(key);
         if (entry != null) {
             return entry.value;
         }
@@ -123,99 +374,485 @@ public class HashTableSeparateChaining<K, V> implements Iterable<K> {
         if (key == null) {
             return null;
         }
+        migrateBeforeWrite(key.hashCode());
         int bucketIndex = normalizeIndex(key.hashCode());
         return bucketRemoveEntry(bucketIndex, key);
     }
 
+    // Creates a table holding the given mappings, sized once for all of them.
+    // When a key appears more than once the last of its values wins
+    public static <K, V> HashTableSeparateChaining<K, V> fromArrays(K[] keys, V[] values) {
+        return fromArrays(keys, values, false);
+    }
+
+    public static <K, V> HashTableSeparateChaining<K, V> fromArrays(K[] keys, V[] values, boolean parallel) {
+        HashTableSeparateChaining<K, V> table = new HashTableSeparateChaining<>();
+        table.putAll(keys, values, parallel);
+        return table;
+    }
+
+    public static <K, V> HashTableSeparateChaining<K, V> fromMap(Map<? extends K, ? extends V> map) {
+        HashTableSeparateChaining<K, V> table = new HashTableSeparateChaining<>();
+        table.putAll(map);
+        return table;
+    }
+
+    // 'expectedSize' is used to size the table up front, the
+    // table still grows if the stream holds more keys than that
+    public static <K, V> HashTableSeparateChaining<K, V> fromStream(
+            java.util.stream.Stream<? extends Map.Entry<? extends K, ? extends V>> entries, int expectedSize) {
+        HashTableSeparateChaining<K, V> table = new HashTableSeparateChaining<>();
+        table.ensureCapacity(expectedSize);
+        entries.forEachOrdered(entry -> table.insert(entry.getKey(), entry.getValue()));
+        return table;
+    }
+
+    // Grows the table, in a single rehash, so that 'expectedSize'
+    // keys fit without any further resizing
+    public void ensureCapacity(int expectedSize) {
+        finishResize();
+        int newCapacity = capacity;
+        while ((int) (newCapacity * maxLoadFactor) < expectedSize && newCapacity < (1 << 30)) {
+            newCapacity *= 2;
+        }
+        if (newCapacity > capacity) {
+            rehash(newCapacity);
+        }
+    }
+
+    public void putAll(Map<? extends K, ? extends V> map) {
+        ensureCapacity(size + map.size());
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            insert(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public void putAll(K[] keys, V[] values) {
+        putAll(keys, values, false);
+    }
+
+    // Puts keys[i] => values[i] for every i. The table is sized once for all
+    // the keys, then the keys are hashed in one pass and the entries are
+    // placed in bucket order. With 'parallel' both the hashing and the
+    // placement run on the common ForkJoinPool, each task owning a disjoint
+    // range of buckets so the tasks never touch the same chain
+    public void putAll(K[] keys, V[] values, boolean parallel) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Keys and values differ in length");
+        }
+        final int n = keys.length;
+        ensureCapacity(size + n);
+
+        // Creating the entries is what calls hashCode()
+        final Entry<K, V>[] entries = newTable(n);
+        java.util.function.IntFunction<Entry<K, V>> newEntry = i -> {
+            if (keys[i] == null) throw new IllegalArgumentException("Null key");
+            return new Entry<>(keys[i], values[i]);
+        };
+        if (parallel) {
+            Arrays.parallelSetAll(entries, newEntry);
+        } else {
+            Arrays.setAll(entries, newEntry);
+        }
+
+        if (!parallel) {
+            for (Entry<K, V> entry : entries) {
+                Entry<K, V> existentEntry = bucketPutEntry(normalizeIndex(entry.hash), entry);
+                if (existentEntry != null) {
+                    existentEntry.value = entry.value;
+                } else {
+                    size++;
+                }
+            }
+            return;
+        }
+
+        // Counting sort of the entries by bucket. It is stable, so of two
+        // entries with the same key the later one is still placed last
+        final int[] bucketStart = new int[capacity + 1];
+        for (Entry<K, V> entry : entries) {
+            bucketStart[normalizeIndex(entry.hash) + 1]++;
+        }
+        for (int i = 0; i < capacity; i++) {
+            bucketStart[i + 1] += bucketStart[i];
+        }
+        final Entry<K, V>[] sorted = newTable(n);
+        int[] next = Arrays.copyOf(bucketStart, capacity);
+        for (Entry<K, V> entry : entries) {
+            sorted[next[normalizeIndex(entry.hash)]++] = entry;
+        }
+
+        // Treeifying allocates 'trees' lazily, which the tasks must not race on
+        if (trees == null) {
+            trees = newTrees(capacity);
+        }
+        final int tasks = 4 * java.util.concurrent.ForkJoinPool.getCommonPoolParallelism();
+        final int bucketsPerTask = (capacity + tasks - 1) / tasks;
+        size += java.util.stream.IntStream.range(0, tasks).parallel().map(task -> {
+            int added = 0;
+            int to = Math.min(capacity, (task + 1) * bucketsPerTask);
+            for (int b = task * bucketsPerTask; b < to; b++) {
+                for (int i = bucketStart[b]; i < bucketStart[b + 1]; i++) {
+                    Entry<K, V> existentEntry = bucketPutEntry(b, sorted[i]);
+                    if (existentEntry != null) {
+                        existentEntry.value = sorted[i].value;
+                    } else {
+                        added++;
+                    }
+                }
+            }
+            return added;
+        }).sum();
+    }
+
+    // Finds the entry of a key in whichever table it currently lives in
+    private Entry<K, V> seekEntry(K key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = key.hashCode();
+        if (oldTable != null) {
+            int oldIndex = (hash & 0x7FFFFFFF) % oldCapacity;
+            if (oldTable[oldIndex] != null || (oldTrees != null && oldTrees[oldIndex] != null)) {
+                return bucketSeekEntry(oldTable, oldTrees, oldIndex, key);
+            }
+        }
+        return bucketSeekEntry(table, trees, normalizeIndex(hash), key);
+    }
+
     // Removes an entry from a given bucket if it exists
     private V bucketRemoveEntry(int bucketIndex, K key) {
-        Entry<K, V> entry = bucketSeekEntry(bucketIndex, key);
-        if (entry != null) {
-            LinkedList<Entry<K, V>> links = table[bucketIndex];
-            links.remove(entry);
+        TreeBucket<K, V> tree = (trees == null) ? null : trees[bucketIndex];
+        if (tree != null) {
+            Entry<K, V> entry = (tree.keyClass == key.getClass()) ? tree.remove(key.hashCode(), key) : null;
+            if (entry == null) {
+                return null;
+            }
             --size;
+            if (tree.size() <= untreeifyThreshold) {
+                untreeifyBucket(bucketIndex);
+            }
             return entry.value;
-        } else {
-            return null;
         }
+
+        int hash = key.hashCode();
+        for (Entry<K, V> prev = null, entry = table[bucketIndex]; entry != null; prev = entry, entry = entry.next) {
+            if (entry.hash == hash && entry.key.equals(key)) {
+                // Unlink the entry from the chain
+                if (prev == null) {
+                    table[bucketIndex] = entry.next;
+                } else {
+                    prev.next = entry.next;
+                }
+                entry.next = null;
+                --size;
+                return entry.value;
+            }
+        }
+        return null;
     }
 
     // Inserts an entry in a given bucket only if the entry does not already
     // exist in the given bucket, but if it does then update the entry value
     private V bucketInsertEntry(int bucketIndex, Entry<K, V> entry) {
-        LinkedList<Entry<K,V>> bucket = table[bucketIndex];
-        if (bucket == null) {
-            table[bucketIndex] = new LinkedList<>();
-            bucket = table[bucketIndex];
-        }
-
-        Entry<K, V> existentEntry = bucketSeekEntry(bucketIndex, entry.key);
-        if (existentEntry == null) {
-            bucket.add(entry);
-            size++;
-            if (size > threshold) {
-                resizeTable();
-            }
-            // Use null to indicate that there was no previous entry
-            return null;
-        } else {
+        Entry<K, V> existentEntry = bucketPutEntry(bucketIndex, entry);
+        if (existentEntry != null) {
             V oldVal = existentEntry.value;
             existentEntry.value = entry.value;
             return oldVal;
         }
+        size++;
+        if (size > threshold) {
+            resizeTable();
+        }
+        // Use null to indicate that there was no previous entry
+        return null;
     }
 
-    // Finds and returns a particular entry in a given bucket if it exists, returns null otherwise
-    private Entry<K, V> bucketSeekEntry(int bucketIndex, K key) {
-        if (key == null) {
-            return null;
+    // Links an entry into a bucket unless its key is already there, in which
+    // case the entry holding the key is returned and nothing is changed.
+    // Only touches the given bucket, which is what lets putAll fill disjoint
+    // ranges of buckets in parallel
+    private Entry<K, V> bucketPutEntry(int bucketIndex, Entry<K, V> entry) {
+        TreeBucket<K, V> tree = (trees == null) ? null : trees[bucketIndex];
+        if (tree != null) {
+            // A key the tree cannot order turns the bucket back into a chain
+            if (tree.keyClass != entry.key.getClass()) {
+                untreeifyBucket(bucketIndex);
+            } else {
+                Entry<K, V> existentEntry = tree.get(entry.hash, entry.key);
+                if (existentEntry == null) {
+                    tree.insert(entry);
+                }
+                return existentEntry;
+            }
         }
-        LinkedList<Entry<K, V>> bucket = table[bucketIndex];
-        if (bucket == null) {
-            return null;
+
+        // Walk the chain looking for the key, remembering the tail
+        // to append to and the length of the chain
+        Entry<K, V> tail = null;
+        int chainLength = 0;
+        for (Entry<K, V> e = table[bucketIndex]; e != null; tail = e, e = e.next) {
+            if (e.hash == entry.hash && e.key.equals(entry.key)) {
+                return e;
+            }
+            chainLength++;
+        }
+
+        if (tail == null) {
+            table[bucketIndex] = entry;
+        } else {
+            tail.next = entry;
+        }
+        if (chainLength + 1 > treeifyThreshold) {
+            treeifyBucket(bucketIndex);
         }
-        for (Entry<K, V> entry: bucket) {
-            if (entry.key.equals(key)) {
+        return null;
+    }
+
+    // Finds and returns a particular entry in a given bucket if it exists, returns null otherwise
+    private Entry<K, V> bucketSeekEntry(Entry<K, V>[] table, TreeBucket<K, V>[] trees, int bucketIndex, K key) {
+        int hash = key.hashCode();
+        TreeBucket<K, V> tree = (trees == null) ? null : trees[bucketIndex];
+        if (tree != null) {
+            return (tree.keyClass == key.getClass()) ? tree.get(hash, key) : null;
+        }
+        // Comparing the cached hashes first skips most equals() calls
+        for (Entry<K, V> entry = table[bucketIndex]; entry != null; entry = entry.next) {
+            if (entry.hash == hash && entry.key.equals(key)) {
                 return entry;
             }
-            return null;
         }
         return null;
     }
 
+    // Moves the chain of a bucket into a tree, if all its keys are of the same Comparable class
+    private void treeifyBucket(int bucketIndex) {
+        Entry<K, V> head = table[bucketIndex];
+        Class<?> keyClass = TreeBucket.comparableClassOf(head.key);
+        if (keyClass == null) {
+            return;
+        }
+        for (Entry<K, V> entry = head; entry != null; entry = entry.next) {
+            if (entry.key.getClass() != keyClass) {
+                return;
+            }
+        }
+
+        TreeBucket<K, V> tree = new TreeBucket<>(keyClass);
+        for (Entry<K, V> entry = head, next; entry != null; entry = next) {
+            next = entry.next;
+            entry.next = null;
+            tree.insert(entry);
+        }
+        if (trees == null) {
+            trees = newTrees(capacity);
+        }
+        trees[bucketIndex] = tree;
+        table[bucketIndex] = null;
+    }
+
+    // Arrays of a generic type can only be created with wildcards
+    private static <K, V> Entry<K, V>[] newTable(int capacity) {
+        return (Entry<K, V>[]) new Entry<?, ?>[capacity];
+    }
+
+    private static <K, V> TreeBucket<K, V>[] newTrees(int capacity) {
+        return (TreeBucket<K, V>[]) new TreeBucket<?, ?>[capacity];
+    }
+
+    // Moves the entries of a tree bucket back into a chain
+    private void untreeifyBucket(int bucketIndex) {
+        table[bucketIndex] = link(trees[bucketIndex].entries());
+        trees[bucketIndex] = null;
+    }
+
+    // Links a list of entries into a chain and returns its head
+    private static <K, V> Entry<K, V> link(List<Entry<K, V>> entries) {
+        Entry<K, V> head = null;
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry<K, V> entry = entries.get(i);
+            entry.next = head;
+            head = entry;
+        }
+        return head;
+    }
+
+    // Returns an iterator over the entries of a bucket or null if it is empty
+    private java.util.Iterator<Entry<K, V>> bucketIterator(int bucketIndex) {
+        Entry<K, V>[] table = this.table;
+        TreeBucket<K, V>[] trees = this.trees;
+        if (bucketIndex >= capacity) {
+            table = oldTable;
+            trees = oldTrees;
+            bucketIndex -= capacity;
+        }
+        if (trees != null && trees[bucketIndex] != null) {
+            return trees[bucketIndex].entries().iterator();
+        }
+        final Entry<K, V> head = table[bucketIndex];
+        if (head == null) {
+            return null;
+        }
+        return new java.util.Iterator<Entry<K, V>>() {
+            Entry<K, V> trav = head;
+
+            @Override public boolean hasNext() {
+                return trav != null;
+            }
+
+            @Override public Entry<K, V> next() {
+                Entry<K, V> entry = trav;
+                trav = trav.next;
+                return entry;
+            }
+        };
+    }
+
     // Resizes the internal table holding buckets of entries
     private void resizeTable() {
+        // A previous incremental resize has to be done before the next one starts
+        finishResize();
+
+        oldTable = table;
+        oldTrees = trees;
+        oldCapacity = capacity;
+        migrateIndex = 0;
+
         capacity *= 2;
         threshold = (int) (capacity * maxLoadFactor);
-        LinkedList<Entry<K, V>>[] newTable = new LinkedList[capacity];
-        for (int i = 0; i < table.length; i++) {
-            if (table[i] != null) {
-                for (Entry<K, V> entry : table[i]) {
-                    int bucketIndex = normalizeIndex(entry.hash);
-                    LinkedList<Entry<K, V>> bucket = newTable[bucketIndex];
-                    if (bucket == null) {
-                        newTable[bucketIndex] = new LinkedList<>();
-                        bucket = newTable[bucketIndex];
-                        bucket.add(entry);
-                    }
+        table = newTable(capacity);
+        trees = null;
+
+        if (!incrementalResize) {
+            finishResize();
+        }
+    }
+
+    private void finishResize() {
+        while (oldTable != null) {
+            migrateStep();
+        }
+    }
+
+    // Moves every entry into a table of the given capacity in one go. Unlike
+    // a doubling, the new capacity may be any multiple of the old one, so the
+    // entries are simply relinked by their new bucket
+    private void rehash(int newCapacity) {
+        Entry<K, V>[] oldTable = table;
+        TreeBucket<K, V>[] oldTrees = trees;
+        capacity = newCapacity;
+        threshold = (int) (capacity * maxLoadFactor);
+        table = newTable(capacity);
+        trees = null;
+
+        for (int i = 0; i < oldTable.length; i++) {
+            Entry<K, V> head = oldTable[i];
+            if (oldTrees != null && oldTrees[i] != null) {
+                head = link(oldTrees[i].entries());
+            }
+            for (Entry<K, V> entry = head, next; entry != null; entry = next) {
+                next = entry.next;
+                int bucketIndex = normalizeIndex(entry.hash);
+                entry.next = table[bucketIndex];
+                table[bucketIndex] = entry;
+            }
+        }
+
+        // Buckets that still collide too much become trees again
+        for (int i = 0; i < capacity; i++) {
+            int chainLength = 0;
+            for (Entry<K, V> entry = table[i]; entry != null && chainLength <= treeifyThreshold; entry = entry.next) {
+                chainLength++;
+            }
+            if (chainLength > treeifyThreshold) {
+                treeifyBucket(i);
+            }
+        }
+    }
+
+    // Before a write, makes sure the key's old bucket has been moved so the
+    // write only has to deal with the new table, and moves a few more buckets
+    private void migrateBeforeWrite(int hash) {
+        if (oldTable == null) {
+            return;
+        }
+        int oldIndex = (hash & 0x7FFFFFFF) % oldCapacity;
+        if (oldTable[oldIndex] != null || (oldTrees != null && oldTrees[oldIndex] != null)) {
+            splitBucket(oldIndex);
+        }
+        migrateStep();
+    }
+
+    // Moves the next MIGRATION_STEP non-empty old buckets, looking at no more
+    // than ten times as many empty ones, and drops the old table when done.
+    // A full resize is simply this step repeated until the old table is gone
+    private void migrateStep() {
+        int moved = 0;
+        int visitsLeft = incrementalResize ? MIGRATION_STEP * 10 : Integer.MAX_VALUE;
+        while (migrateIndex < oldCapacity && visitsLeft-- > 0) {
+            int i = migrateIndex++;
+            if (oldTable[i] != null || (oldTrees != null && oldTrees[i] != null)) {
+                splitBucket(i);
+                if (incrementalResize && ++moved == MIGRATION_STEP) {
+                    break;
                 }
-                
-                // Avoid memory leak. Help the GC
-                table[i].clear();
-                table[i] = null;
             }
         }
-        table = newTable;
+        if (migrateIndex == oldCapacity) {
+            oldTable = null;
+            oldTrees = null;
+        }
+    }
+
+    // Moves bucket i of the old table into the new one. Since the capacity
+    // doubled, the entries of bucket i can only move to bucket i or
+    // i + oldCapacity, so the chain is split into a low and a high half by
+    // relinking its entries in place without allocating anything
+    private void splitBucket(int i) {
+        Entry<K, V> head = oldTable[i];
+        if (oldTrees != null && oldTrees[i] != null) {
+            head = link(oldTrees[i].entries());
+            oldTrees[i] = null;
+        }
+        oldTable[i] = null;
+
+        Entry<K, V> loHead = null, loTail = null, hiHead = null, hiTail = null;
+        int loLength = 0, hiLength = 0;
+        for (Entry<K, V> entry = head, next; entry != null; entry = next) {
+            next = entry.next;
+            entry.next = null;
+            if (normalizeIndex(entry.hash) == i) {
+                if (loTail == null) loHead = entry; else loTail.next = entry;
+                loTail = entry;
+                loLength++;
+            } else {
+                if (hiTail == null) hiHead = entry; else hiTail.next = entry;
+                hiTail = entry;
+                hiLength++;
+            }
+        }
+        table[i] = loHead;
+        table[i + oldCapacity] = hiHead;
+
+        // Halves that are still too long become trees again
+        if (loLength > treeifyThreshold) treeifyBucket(i);
+        if (hiLength > treeifyThreshold) treeifyBucket(i + oldCapacity);
+    }
+
+    // Number of buckets visible to the iterators, the buckets past
+    // 'capacity' are the ones of the old table that were not moved yet
+    private int bucketCount() {
+        return (oldTable == null) ? capacity : capacity + oldCapacity;
     }
 
     // Return the list of keys found within the hash table
     public List<K> keys() {
         List<K> keys = new ArrayList<>(size());
-        for (LinkedList<Entry<K, V>> bucket : table) {
-            if (bucket != null) {
-                for (Entry<K, V> entry : bucket) {
-                    keys.add(entry.key);
-                }
+        for (int i = 0; i < bucketCount(); i++) {
+            java.util.Iterator<Entry<K, V>> entries = bucketIterator(i);
+            while (entries != null && entries.hasNext()) {
+                keys.add(entries.next().key);
             }
         }
         return keys;
@@ -224,11 +861,10 @@ public class HashTableSeparateChaining<K, V> implements Iterable<K> {
     // Return the list of values found within the hash table
     public List<V> values() {
         List<V> values = new ArrayList<>(size());
-        for (LinkedList<Entry<K, V>> bucket : table) {
-            if (bucket != null) {
-                for (Entry<K, V> entry : bucket) {
-                    values.add(entry.value);
-                }
+        for (int i = 0; i < bucketCount(); i++) {
+            java.util.Iterator<Entry<K, V>> entries = bucketIterator(i);
+            while (entries != null && entries.hasNext()) {
+                values.add(entries.next().value);
             }
         }
         return values;
@@ -239,7 +875,7 @@ public class HashTableSeparateChaining<K, V> implements Iterable<K> {
         final int elementCount = size();
         return new java.util.Iterator<K>() {
             int bucketIndex = 0;
-            java.util.Iterator<Entry<K, V>> bucketIter = (table[0] == null) ? null : table[0].iterator();
+            java.util.Iterator<Entry<K, V>> bucketIter = bucketIterator(0);
             
             @Override public boolean hasNext() {
                 // An element was added or removed while iterating
@@ -250,18 +886,16 @@ public class HashTableSeparateChaining<K, V> implements Iterable<K> {
                 // No iterator or the current iterator is empty
                 if (bucketIter == null || !bucketIter.hasNext()) {
                     // Search next buckets until a valid iterator is found
-                    while (++bucketIndex < capacity) {
-                        if (table[bucketIndex] != null) {
-                            // Make sure this iterator actually has elements -_-
-                            java.util.Iterator<Entry<K, V>> nextIter = table[bucketIndex].iterator();
-                            if (nextIter.hasNext()) {
-                                bucketIter = nextIter;
-                                break;
-                            }
+                    while (++bucketIndex < bucketCount()) {
+                        // Make sure this iterator actually has elements -_-
+                        java.util.Iterator<Entry<K, V>> nextIter = bucketIterator(bucketIndex);
+                        if (nextIter != null && nextIter.hasNext()) {
+                            bucketIter = nextIter;
+                            break;
                         }
                     }
                 }
-                return bucketIndex < capacity;
+                return bucketIndex < bucketCount();
             }
 
             @Override public K next() {
@@ -278,12 +912,10 @@ public class HashTableSeparateChaining<K, V> implements Iterable<K> {
     @Override public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("{");
-        for (int i = 0; i < capacity; i++) {
-            if (table[i] == null) {
-                continue;
-            }
-            for (Entry<K, V> entry : table[i]) {
-                sb.append(entry + ", ");
+        for (int i = 0; i < bucketCount(); i++) {
+            java.util.Iterator<Entry<K, V>> entries = bucketIterator(i);
+            while (entries != null && entries.hasNext()) {
+                sb.append(entries.next() + ", ");
             }
         }
         sb.append("}");
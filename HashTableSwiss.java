@@ -0,0 +1,359 @@
+import java.util.*;
+
+// A hash-table using open addressing in the style of SwissTable. Next to the
+// keys and values there is a control byte for every bucket, which holds 7 bits
+// of the key's hash when the bucket is full or marks it as empty or deleted.
+// The buckets are probed in groups of 8: the 8 control bytes of a group are
+// read as a single long and compared against the hash fragment with SWAR (SIMD
+// within a register) arithmetic, so equals() is only called on the buckets
+// whose fragment matches, which is 1 in 128 of the other keys. A lookup for a
+// missing key usually stops after reading one long, the one group it hashes to.
+//
+// Groups are probed with the same triangular sequence as the slots of
+// HashTableQuadraticProbing, which visits every group of a power of two table.
+@SuppressWarnings("unchecked")
+public class HashTableSwiss<K, V> implements Iterable<K> {
+    private static final int GROUP_SIZE = 8;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double DEFAULT_LOAD_FACTOR = 0.875;
+
+    // Control bytes. A full bucket holds the low 7 bits of the hash (so its
+    // high bit is 0). The encodings are picked so that a group of them can be
+    // classified with a few bit operations, see the match methods below
+    private static final int EMPTY = 0xFF;
+    private static final int DELETED = 0x80;
+
+    private static final long LSB = 0x0101010101010101L;
+    private static final long MSB = 0x8080808080808080L;
+
+    private double loadFactor;
+    private int capacity;
+    private int threshold;
+    private int modificationCount = 0;
+
+    // 'usedBuckets' counts the buckets that are not empty, including the
+    // deleted ones. 'keyCount' tracks the number of keys in the table
+    private int usedBuckets = 0;
+    private int keyCount = 0;
+
+    // 8 control bytes per long, byte j of ctrl[g] belongs to bucket 8*g+j
+    private long[] ctrl;
+    private K[] keyTable;
+    private V[] valueTable;
+
+    public HashTableSwiss() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public HashTableSwiss(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    // Designated constructor
+    public HashTableSwiss(int capacity, double loadFactor) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        // Open addressing always needs a free bucket to terminate a probe
+        if (loadFactor <= 0 || loadFactor >= 1 || Double.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal loadFactor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        allocate(Math.max(DEFAULT_CAPACITY, next2Power(capacity)));
+    }
+
+    // Given a number this method finds the next
+    // power of two above this value
+    private static int next2Power(int n) {
+        return Integer.highestOneBit(n) << 1;
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        threshold = (int) (capacity * loadFactor);
+        ctrl = new long[capacity / GROUP_SIZE];
+        Arrays.fill(ctrl, -1L); // every byte EMPTY
+        keyTable = (K[]) new Object[capacity];
+        valueTable = (V[]) new Object[capacity];
+        usedBuckets = 0;
+    }
+
+    // The high bits of the hash pick the group and the low 7 bits are the
+    // fragment stored in the control byte, so both need to be well mixed
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int fragment(int hash) {
+        return hash & 0x7F;
+    }
+
+    private int firstGroup(int hash) {
+        return (hash >>> 7) & (ctrl.length - 1);
+    }
+
+    // Returns a mask with the high bit set in every byte of the group equal
+    // to the fragment. Like every SWAR byte compare this can report a false
+    // match in a byte above a true one, which the key compare then rejects
+    private static long matchFragment(long group, int fragment) {
+        long x = group ^ (LSB * fragment);
+        return (x - LSB) & ~x & MSB;
+    }
+
+    // EMPTY is the only control byte with both of its top two bits set
+    private static long matchEmpty(long group) {
+        return group & (group << 1) & MSB;
+    }
+
+    // EMPTY and DELETED are the only control bytes with the high bit set
+    private static long matchEmptyOrDeleted(long group) {
+        return group & MSB;
+    }
+
+    // Index within the group of the lowest byte set in the mask
+    private static int lowestByte(long mask) {
+        return Long.numberOfTrailingZeros(mask) >>> 3;
+    }
+
+    private int ctrlAt(int bucket) {
+        return (int) (ctrl[bucket >>> 3] >>> ((bucket & (GROUP_SIZE - 1)) << 3)) & 0xFF;
+    }
+
+    private void setCtrl(int bucket, int value) {
+        int shift = (bucket & (GROUP_SIZE - 1)) << 3;
+        int g = bucket >>> 3;
+        ctrl[g] = (ctrl[g] & ~(0xFFL << shift)) | ((long) value << shift);
+    }
+
+    // Clears all the contents of the hash-table
+    public void clear() {
+        Arrays.fill(ctrl, -1L);
+        Arrays.fill(keyTable, null);
+        Arrays.fill(valueTable, null);
+        keyCount = 0;
+        usedBuckets = 0;
+        modificationCount++;
+    }
+
+    // Returns the number of keys currently inside the hash-table
+    public int size() {
+        return keyCount;
+    }
+
+    // Returns true/false depending on whether the hash-table is empty
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    // Insert, put and add all place a value in the hash-table
+    public V put(K key, V value) {
+        return insert(key, value);
+    }
+
+    public V add(K key, V value) {
+        return insert(key, value);
+    }
+
+    // Place a key-value pair into the hash-table. If the value already
+    // exists inside the hash-table then the value is updated
+    public V insert(K key, V val) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key");
+        }
+        int hash = hash(key);
+        int i = bucketOf(key, hash);
+        if (i != -1) {
+            V oldValue = valueTable[i];
+            valueTable[i] = val;
+            modificationCount++;
+            return oldValue;
+        }
+
+        if (usedBuckets >= threshold) {
+            resizeTable();
+        }
+        i = freeBucket(hash);
+        if (ctrlAt(i) == EMPTY) {
+            usedBuckets++;
+        }
+        setCtrl(i, fragment(hash));
+        keyTable[i] = key;
+        valueTable[i] = val;
+        keyCount++;
+        modificationCount++;
+        return null;
+    }
+
+    // Returns the bucket the key is in or -1 if the key does not exist
+    private int bucketOf(K key, int hash) {
+        final int groupMask = ctrl.length - 1;
+        final int fragment = fragment(hash);
+        int g = firstGroup(hash);
+        for (int x = 1; ; g = (g + x++) & groupMask) {
+            long group = ctrl[g];
+            for (long m = matchFragment(group, fragment); m != 0; m &= m - 1) {
+                int i = (g << 3) + lowestByte(m);
+                if (key.equals(keyTable[i])) {
+                    return i;
+                }
+            }
+            // The key would have been placed in this group's empty bucket
+            if (matchEmpty(group) != 0) {
+                return -1;
+            }
+        }
+    }
+
+    private int bucketOf(K key) {
+        if (key == null) throw new IllegalArgumentException("Null key");
+        return bucketOf(key, hash(key));
+    }
+
+    // Returns the first empty or deleted bucket of the probe sequence
+    private int freeBucket(int hash) {
+        final int groupMask = ctrl.length - 1;
+        int g = firstGroup(hash);
+        for (int x = 1; ; g = (g + x++) & groupMask) {
+            long free = matchEmptyOrDeleted(ctrl[g]);
+            if (free != 0) {
+                return (g << 3) + lowestByte(free);
+            }
+        }
+    }
+
+    // Returns true/false on whether a given key exists within the hash-table
+    public boolean contains(K key) {
+        return hasKey(key);
+    }
+
+    public boolean containsKey(K key) {
+        return hasKey(key);
+    }
+
+    public boolean hasKey(K key) {
+        return bucketOf(key) != -1;
+    }
+
+    // Get the value associated with the input key.
+    // NOTE: returns null if the value is null AND also returns
+    // null if the key does not exist
+    public V get(K key) {
+        int i = bucketOf(key);
+        return i == -1 ? null : valueTable[i];
+    }
+
+    // Removes a key from the map and returns the value.
+    // NOTE: returns null if the value is null AND also returns
+    // null if the key does not exist
+    public V remove(K key) {
+        int i = bucketOf(key);
+        if (i == -1) {
+            return null;
+        }
+        V oldValue = valueTable[i];
+        keyTable[i] = null;
+        valueTable[i] = null;
+
+        // If the group still has an empty bucket no probe ever went past it,
+        // so the bucket can be marked empty again instead of deleted
+        if (matchEmpty(ctrl[i >>> 3]) != 0) {
+            setCtrl(i, EMPTY);
+            usedBuckets--;
+        } else {
+            setCtrl(i, DELETED);
+        }
+        keyCount--;
+        modificationCount++;
+        return oldValue;
+    }
+
+    // Returns a list of keys found in the hash table
+    public List<K> keys() {
+        List<K> keys = new ArrayList<>(size());
+        for (int i = 0; i < capacity; i++) {
+            if (keyTable[i] != null) {
+                keys.add(keyTable[i]);
+            }
+        }
+        return keys;
+    }
+
+    // Returns a list of non-unique values found in the hash table
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        for (int i = 0; i < capacity; i++) {
+            if (keyTable[i] != null) {
+                values.add(valueTable[i]);
+            }
+        }
+        return values;
+    }
+
+    // Rebuilds the table once the used buckets reach the threshold. When most
+    // of them are deleted the keys are rehashed into a table of the same
+    // size, otherwise the capacity is doubled
+    private void resizeTable() {
+        K[] oldKeyTable = keyTable;
+        V[] oldValueTable = valueTable;
+        allocate(keyCount >= threshold / 2 ? capacity * 2 : capacity);
+
+        // The keys are known to be unique, so we only need to find a free bucket
+        for (int b = 0; b < oldKeyTable.length; b++) {
+            if (oldKeyTable[b] != null) {
+                int hash = hash(oldKeyTable[b]);
+                int i = freeBucket(hash);
+                setCtrl(i, fragment(hash));
+                keyTable[i] = oldKeyTable[b];
+                valueTable[i] = oldValueTable[b];
+            }
+        }
+        usedBuckets = keyCount;
+    }
+
+    @Override public java.util.Iterator<K> iterator() {
+        // Before the iteration begins record the number of modifications
+        // done to the hash-table. This value should not change as we iterate
+        // otherwise a concurrent modification has occurred
+        final int MODIFICATION_COUNT = modificationCount;
+
+        return new java.util.Iterator<K>() {
+            int keysLeft = keyCount;
+            int index = 0;
+
+            @Override public boolean hasNext() {
+                // The contents of the table have been altered
+                if (MODIFICATION_COUNT != modificationCount) {
+                    throw new java.util.ConcurrentModificationException();
+                }
+                return keysLeft != 0;
+            }
+
+            // Find the next element and return it
+            @Override public K next() {
+                if (!hasNext()) throw new java.util.NoSuchElementException();
+                while (keyTable[index] == null) {
+                    index++;
+                }
+                keysLeft--;
+                return keyTable[index++];
+            }
+
+            @Override public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        for (int i = 0; i < capacity; i++) {
+            if (keyTable[i] != null) {
+                sb.append(keyTable[i] + " => " + valueTable[i] + ", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,316 @@
+import java.util.Arrays;
+
+// A hash-table from primitive int keys to primitive int values using open
+// addressing with the same quadratic probing scheme as HashTableQuadraticProbing.
+// Keys and values are interleaved in a single int[] (key at 2i, value at 2i+1)
+// so no entry is boxed and a probe finds a key and its value on the same cache
+// line. An entry costs 8 bytes per bucket, i.e. ~16 bytes at the default 0.5
+// load factor.
+public class IntIntQuadraticProbingMap {
+    // Reserved keys marking empty and deleted buckets, these two
+    // keys cannot be stored in the map
+    public static final int EMPTY_KEY = Integer.MIN_VALUE;
+    public static final int TOMBSTONE = Integer.MIN_VALUE + 1;
+
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final double DEFAULT_LOAD_FACTOR = 0.5;
+    private static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    private final double loadFactor;
+    private final int noEntryValue;
+    private int capacity;
+    private int threshold;
+    private int modificationCount = 0;
+
+    // 'usedBuckets' counts the total number of used buckets inside the
+    // hash-table (includes cells marked as deleted). 'keyCount' tracks
+    // the number of unique keys currently inside the hash-table
+    private int usedBuckets = 0;
+    private int keyCount = 0;
+
+    // Interleaved key-value pairs, the key of bucket i is at table[2*i]
+    // and its value at table[2*i+1]
+    private int[] table;
+
+    public IntIntQuadraticProbingMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public IntIntQuadraticProbingMap(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public IntIntQuadraticProbingMap(int capacity, double loadFactor) {
+        this(capacity, loadFactor, 0);
+    }
+
+    // Designated constructor. 'noEntryValue' is what get/put/remove return
+    // when a key is not in the map.
+    public IntIntQuadraticProbingMap(int capacity, double loadFactor, int noEntryValue) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        // Open addressing always needs a free bucket to terminate a probe
+        if (loadFactor <= 0 || loadFactor >= 1 || Double.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal loadFactor: " + loadFactor);
+        }
+
+        this.loadFactor = loadFactor;
+        this.noEntryValue = noEntryValue;
+        this.capacity = Math.max(DEFAULT_CAPACITY, next2Power(capacity));
+        threshold = (int) (this.capacity * loadFactor);
+        table = newTable(this.capacity);
+    }
+
+    // Given a number this method finds the next
+    // power of two above this value
+    private static int next2Power(int n) {
+        return Math.min(MAXIMUM_CAPACITY, Integer.highestOneBit(n) << 1);
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[2 * capacity];
+        Arrays.fill(table, EMPTY_KEY);
+        return table;
+    }
+
+    // Spreads the bits of the key so that keys which only differ in their
+    // high bits do not all land in the same bucket after masking
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static void keyNotReservedOrThrow(int key) {
+        if (key == EMPTY_KEY || key == TOMBSTONE) {
+            throw new IllegalArgumentException("Reserved key: " + key);
+        }
+    }
+
+    // Clears all the contents of the hash-table
+    public void clear() {
+        Arrays.fill(table, EMPTY_KEY);
+        keyCount = 0;
+        usedBuckets = 0;
+        modificationCount++;
+    }
+
+    // Returns the number of keys currently inside the hash-table
+    public int size() {
+        return keyCount;
+    }
+
+    // Returns true/false depending on whether the hash-table is empty
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    // Insert, put and add all place a value in the hash-table
+    public int put(int key, int value) {
+        return insert(key, value);
+    }
+
+    public int add(int key, int value) {
+        return insert(key, value);
+    }
+
+    // Place a key-value pair into the hash-table. If the key already exists
+    // its value is updated and the previous value is returned, otherwise
+    // the no entry value is returned
+    public int insert(int key, int val) {
+        keyNotReservedOrThrow(key);
+        if (usedBuckets >= threshold) {
+            resizeTable();
+        }
+
+        final int mask = capacity - 1;
+        int i = hash(key) & mask;
+        int j = -1;
+
+        // Probing i = hash + P(x) with P(x) = (x^2+x)/2, computed incrementally
+        // since P(x) - P(x-1) = x. Over a power of two capacity this sequence
+        // visits every bucket.
+        for (int x = 1; ; i = (i + x++) & mask) {
+            int k = table[2 * i];
+
+            // The current slot was previously deleted, remember the first one
+            if (k == TOMBSTONE) {
+                if (j == -1) {
+                    j = i;
+                }
+            // Current cell is empty so the key is not in the table
+            } else if (k == EMPTY_KEY) {
+                if (j == -1) {
+                    usedBuckets++;
+                    j = i;
+                }
+                table[2 * j] = key;
+                table[2 * j + 1] = val;
+                keyCount++;
+                modificationCount++;
+                return noEntryValue;
+            // The key exists, update its value and move it into the
+            // first deleted bucket we passed, if any
+            } else if (k == key) {
+                int oldValue = table[2 * i + 1];
+                if (j != -1) {
+                    table[2 * i] = TOMBSTONE;
+                    i = j;
+                    table[2 * i] = key;
+                }
+                table[2 * i + 1] = val;
+                modificationCount++;
+                return oldValue;
+            }
+        }
+    }
+
+    // Returns the bucket containing the key or -1 if it is not in the table
+    private int bucketOf(int key) {
+        keyNotReservedOrThrow(key);
+        final int mask = capacity - 1;
+        int i = hash(key) & mask;
+        for (int x = 1; ; i = (i + x++) & mask) {
+            int k = table[2 * i];
+            if (k == key) {
+                return i;
+            }
+            if (k == EMPTY_KEY) {
+                return -1;
+            }
+        }
+    }
+
+    // Returns true/false on whether a given key exists within the hash-table
+    public boolean containsKey(int key) {
+        return bucketOf(key) != -1;
+    }
+
+    public boolean hasKey(int key) {
+        return containsKey(key);
+    }
+
+    // Get the value associated with the input key.
+    // NOTE: returns the no entry value if the key does not exist
+    public int get(int key) {
+        return getOrDefault(key, noEntryValue);
+    }
+
+    public int getOrDefault(int key, int defaultValue) {
+        int i = bucketOf(key);
+        return i == -1 ? defaultValue : table[2 * i + 1];
+    }
+
+    // Removes a key from the map and returns the value.
+    // NOTE: returns the no entry value if the key does not exist
+    public int remove(int key) {
+        int i = bucketOf(key);
+        if (i == -1) {
+            return noEntryValue;
+        }
+        int oldValue = table[2 * i + 1];
+        table[2 * i] = TOMBSTONE;
+        table[2 * i + 1] = noEntryValue;
+        keyCount--;
+        modificationCount++;
+        return oldValue;
+    }
+
+    // Returns the keys found in the hash table
+    public int[] keys() {
+        int[] keys = new int[keyCount];
+        for (int i = 0, n = 0; i < capacity; i++) {
+            int k = table[2 * i];
+            if (k != EMPTY_KEY && k != TOMBSTONE) {
+                keys[n++] = k;
+            }
+        }
+        return keys;
+    }
+
+    // Returns the non-unique values found in the hash table
+    public int[] values() {
+        int[] values = new int[keyCount];
+        for (int i = 0, n = 0; i < capacity; i++) {
+            int k = table[2 * i];
+            if (k != EMPTY_KEY && k != TOMBSTONE) {
+                values[n++] = table[2 * i + 1];
+            }
+        }
+        return values;
+    }
+
+    // Rebuilds the table once the used buckets reach the threshold. When most
+    // of the used buckets are tombstones the live keys are rehashed into a
+    // table of the same size, otherwise the capacity is doubled.
+    private void resizeTable() {
+        if (keyCount >= threshold / 2) {
+            if (capacity == MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("Hash-table is full");
+            }
+            capacity *= 2;
+        }
+        threshold = (int) (capacity * loadFactor);
+
+        int[] oldTable = table;
+        table = newTable(capacity);
+        usedBuckets = keyCount;
+
+        // The keys are known to be unique, so we only need to find an empty bucket
+        final int mask = capacity - 1;
+        for (int b = 0; b < oldTable.length; b += 2) {
+            int k = oldTable[b];
+            if (k == EMPTY_KEY || k == TOMBSTONE) {
+                continue;
+            }
+            int i = hash(k) & mask;
+            for (int x = 1; table[2 * i] != EMPTY_KEY; i = (i + x++) & mask);
+            table[2 * i] = k;
+            table[2 * i + 1] = oldTable[b + 1];
+        }
+    }
+
+    // Iterates over the keys without boxing them
+    public java.util.PrimitiveIterator.OfInt iterator() {
+        // Before the iteration begins record the number of modifications
+        // done to the hash-table. This value should not change as we iterate
+        // otherwise a concurrent modification has occurred
+        final int MODIFICATION_COUNT = modificationCount;
+
+        return new java.util.PrimitiveIterator.OfInt() {
+            int keysLeft = keyCount;
+            int index = 0;
+
+            @Override public boolean hasNext() {
+                // The contents of the table have been altered
+                if (MODIFICATION_COUNT != modificationCount) {
+                    throw new java.util.ConcurrentModificationException();
+                }
+                return keysLeft != 0;
+            }
+
+            // Find the next element and return it
+            @Override public int nextInt() {
+                if (!hasNext()) throw new java.util.NoSuchElementException();
+                while (table[2 * index] == EMPTY_KEY || table[2 * index] == TOMBSTONE) {
+                    index++;
+                }
+                keysLeft--;
+                return table[2 * index++];
+            }
+        };
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        for (int i = 0; i < capacity; i++) {
+            int k = table[2 * i];
+            if (k != EMPTY_KEY && k != TOMBSTONE) {
+                sb.append(k).append(" => ").append(table[2 * i + 1]).append(", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,92 @@
+// A stack of primitive longs backed by an array, see ArrayStack. The values
+// are stored inline so push and pop never box or allocate. The array doubles
+// when it fills up, unless the stack is bounded in which case push returns
+// false instead.
+public class LongArrayStack {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] arr;
+    private int size = 0;
+
+    // The most elements the stack holds, or -1 if it grows without bound
+    private final int bound;
+
+    public LongArrayStack() {
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    public LongArrayStack(int capacity) {
+        this(capacity, false);
+    }
+
+    // With 'bounded' the stack never holds more than 'capacity' elements
+    public LongArrayStack(int capacity, boolean bounded) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        arr = new long[capacity];
+        bound = bounded ? capacity : -1;
+    }
+
+    // Return the number of elements in the stack
+    public int size() {
+        return size;
+    }
+
+    // Check if the stack is empty
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Push an element on the stack. Returns false, without
+    // pushing it, if the stack is bounded and full
+    public boolean push(long elem) {
+        if (size == bound) {
+            return false;
+        }
+        if (size == arr.length) {
+            arr = java.util.Arrays.copyOf(arr, arr.length * 2);
+        }
+        arr[size++] = elem;
+        return true;
+    }
+
+    // Pop an element off the stack
+    // Throws an error if the stack is empty
+    public long pop() {
+        if (isEmpty()) {
+            throw new java.util.EmptyStackException();
+        }
+        return arr[--size];
+    }
+
+    // Peek at the top of the stack without removing an element
+    // Throws an exception if the stack is empty
+    public long peek() {
+        if (isEmpty()) {
+            throw new java.util.EmptyStackException();
+        }
+        return arr[size - 1];
+    }
+
+    // There are no references to release so only the size is reset
+    public void clear() {
+        size = 0;
+    }
+
+    // Iterates from the bottom of the stack to the top without boxing
+    public java.util.PrimitiveIterator.OfLong iterator() {
+        return new java.util.PrimitiveIterator.OfLong() {
+            int index = 0;
+
+            @Override public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override public long nextLong() {
+                if (index >= size) throw new java.util.NoSuchElementException();
+                return arr[index++];
+            }
+        };
+    }
+}
@@ -0,0 +1,155 @@
+// A binary min heap of primitive long keys, each carrying an int value, see
+// IntMinHeap. Long keys fit distances that may overflow an int and deadlines
+// from System.nanoTime().
+public class LongMinHeap {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    public LongMinHeap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongMinHeap(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        keys = new long[Math.max(1, capacity)];
+        values = new int[keys.length];
+    }
+
+    // Builds a heap of the entries in O(n), the arrays are copied
+    public LongMinHeap(long[] keys, int[] values) {
+        this(keys.length);
+        addAll(keys, values);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Adds an entry, O(log(n))
+    public void add(long key, int value) {
+        if (size == keys.length) {
+            grow(size + 1);
+        }
+        siftUp(size++, key, value);
+    }
+
+    // Adds all the entries, rebuilding the heap bottom up in O(n + k) when
+    // that is cheaper than sifting each of the k entries up
+    public void addAll(long[] keys, int[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("Keys and values differ in length");
+        }
+        int count = keys.length;
+        if (size + count > this.keys.length) {
+            grow(size + count);
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(size + count);
+        if ((long) count * bits < size) {
+            for (int i = 0; i < count; i++) {
+                siftUp(size++, keys[i], values[i]);
+            }
+            return;
+        }
+        System.arraycopy(keys, 0, this.keys, size, count);
+        System.arraycopy(values, 0, this.values, size, count);
+        size += count;
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i, this.keys[i], this.values[i]);
+        }
+    }
+
+    // Returns the smallest key
+    public long peekKey() {
+        if (isEmpty()) throw new java.util.NoSuchElementException("Empty heap");
+        return keys[0];
+    }
+
+    // Returns the value of the smallest key
+    public int peekValue() {
+        if (isEmpty()) throw new java.util.NoSuchElementException("Empty heap");
+        return values[0];
+    }
+
+    // Removes the entry with the smallest key and returns its value, O(log(n)).
+    // Read peekKey() first if the key is needed as well
+    public int poll() {
+        if (isEmpty()) throw new java.util.NoSuchElementException("Empty heap");
+        int value = values[0];
+        int last = --size;
+        if (last > 0) {
+            siftDown(0, keys[last], values[last]);
+        }
+        return value;
+    }
+
+    // Bottom up sift of the entry from the hole at k
+    private void siftUp(int k, long key, int value) {
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (key >= keys[parent]) {
+                break;
+            }
+            keys[k] = keys[parent];
+            values[k] = values[parent];
+            k = parent;
+        }
+        keys[k] = key;
+        values[k] = value;
+    }
+
+    // Top down sift of the entry from the hole at k
+    private void siftDown(int k, long key, int value) {
+        int half = size >>> 1;
+        while (k < half) {
+            int child = 2 * k + 1;
+            int right = child + 1;
+            if (right < size && keys[right] < keys[child]) {
+                child = right;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            keys[k] = keys[child];
+            values[k] = values[child];
+            k = child;
+        }
+        keys[k] = key;
+        values[k] = value;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, keys.length * 2);
+        keys = java.util.Arrays.copyOf(keys, capacity);
+        values = java.util.Arrays.copyOf(values, capacity);
+    }
+
+    // Checks the heap invariant, for testing purposes
+    public boolean isMinHeap() {
+        for (int i = 1; i < size; i++) {
+            if (keys[(i - 1) >>> 1] > keys[i]) return false;
+        }
+        return true;
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(keys[i] + "=" + values[i]);
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,315 @@
+import java.util.Arrays;
+
+// A hash-table from primitive long keys to object values using open addressing
+// with the same quadratic probing scheme as HashTableQuadraticProbing. The keys
+// live in a long[] so they are never boxed and probing only touches the key
+// array; the values are kept in a parallel array indexed by bucket.
+@SuppressWarnings("unchecked")
+public class LongObjectQuadraticProbingMap<V> {
+    // Reserved keys marking empty and deleted buckets, these two
+    // keys cannot be stored in the map
+    public static final long EMPTY_KEY = Long.MIN_VALUE;
+    public static final long TOMBSTONE = Long.MIN_VALUE + 1;
+
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final double DEFAULT_LOAD_FACTOR = 0.5;
+    private static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    private final double loadFactor;
+    private int capacity;
+    private int threshold;
+    private int modificationCount = 0;
+
+    // 'usedBuckets' counts the total number of used buckets inside the
+    // hash-table (includes cells marked as deleted). 'keyCount' tracks
+    // the number of unique keys currently inside the hash-table
+    private int usedBuckets = 0;
+    private int keyCount = 0;
+
+    // These arrays store the key-value pairs
+    private long[] keyTable;
+    private V[] valueTable;
+
+    public LongObjectQuadraticProbingMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongObjectQuadraticProbingMap(int capacity) {
+        this(capacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    // Designated constructor
+    public LongObjectQuadraticProbingMap(int capacity, double loadFactor) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        // Open addressing always needs a free bucket to terminate a probe
+        if (loadFactor <= 0 || loadFactor >= 1 || Double.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal loadFactor: " + loadFactor);
+        }
+
+        this.loadFactor = loadFactor;
+        this.capacity = Math.max(DEFAULT_CAPACITY, next2Power(capacity));
+        threshold = (int) (this.capacity * loadFactor);
+        keyTable = newKeyTable(this.capacity);
+        valueTable = (V[]) new Object[this.capacity];
+    }
+
+    // Given a number this method finds the next
+    // power of two above this value
+    private static int next2Power(int n) {
+        return Math.min(MAXIMUM_CAPACITY, Integer.highestOneBit(n) << 1);
+    }
+
+    private static long[] newKeyTable(int capacity) {
+        long[] keyTable = new long[capacity];
+        Arrays.fill(keyTable, EMPTY_KEY);
+        return keyTable;
+    }
+
+    // Spreads the bits of the key so that ids which only differ in their
+    // high bits do not all land in the same bucket after masking
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void keyNotReservedOrThrow(long key) {
+        if (key == EMPTY_KEY || key == TOMBSTONE) {
+            throw new IllegalArgumentException("Reserved key: " + key);
+        }
+    }
+
+    // Clears all the contents of the hash-table
+    public void clear() {
+        Arrays.fill(keyTable, EMPTY_KEY);
+        Arrays.fill(valueTable, null);
+        keyCount = 0;
+        usedBuckets = 0;
+        modificationCount++;
+    }
+
+    // Returns the number of keys currently inside the hash-table
+    public int size() {
+        return keyCount;
+    }
+
+    // Returns true/false depending on whether the hash-table is empty
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    // Insert, put and add all place a value in the hash-table
+    public V put(long key, V value) {
+        return insert(key, value);
+    }
+
+    public V add(long key, V value) {
+        return insert(key, value);
+    }
+
+    // Place a key-value pair into the hash-table. If the key already exists
+    // its value is updated and the previous value is returned, otherwise
+    // null is returned
+    public V insert(long key, V val) {
+        keyNotReservedOrThrow(key);
+        if (usedBuckets >= threshold) {
+            resizeTable();
+        }
+
+        final int mask = capacity - 1;
+        int i = hash(key) & mask;
+        int j = -1;
+
+        // Probing i = hash + P(x) with P(x) = (x^2+x)/2, computed incrementally
+        // since P(x) - P(x-1) = x. Over a power of two capacity this sequence
+        // visits every bucket.
+        for (int x = 1; ; i = (i + x++) & mask) {
+            long k = keyTable[i];
+
+            // The current slot was previously deleted, remember the first one
+            if (k == TOMBSTONE) {
+                if (j == -1) {
+                    j = i;
+                }
+            // Current cell is empty so the key is not in the table
+            } else if (k == EMPTY_KEY) {
+                if (j == -1) {
+                    usedBuckets++;
+                    j = i;
+                }
+                keyTable[j] = key;
+                valueTable[j] = val;
+                keyCount++;
+                modificationCount++;
+                return null;
+            // The key exists, update its value and move it into the
+            // first deleted bucket we passed, if any
+            } else if (k == key) {
+                V oldValue = valueTable[i];
+                if (j != -1) {
+                    keyTable[i] = TOMBSTONE;
+                    valueTable[i] = null;
+                    i = j;
+                    keyTable[i] = key;
+                }
+                valueTable[i] = val;
+                modificationCount++;
+                return oldValue;
+            }
+        }
+    }
+
+    // Returns the bucket containing the key or -1 if it is not in the table
+    private int bucketOf(long key) {
+        keyNotReservedOrThrow(key);
+        final int mask = capacity - 1;
+        int i = hash(key) & mask;
+        for (int x = 1; ; i = (i + x++) & mask) {
+            long k = keyTable[i];
+            if (k == key) {
+                return i;
+            }
+            if (k == EMPTY_KEY) {
+                return -1;
+            }
+        }
+    }
+
+    // Returns true/false on whether a given key exists within the hash-table
+    public boolean containsKey(long key) {
+        return bucketOf(key) != -1;
+    }
+
+    public boolean hasKey(long key) {
+        return containsKey(key);
+    }
+
+    // Get the value associated with the input key.
+    // NOTE: returns null if the value is null AND also returns
+    // null if the key does not exist
+    public V get(long key) {
+        return getOrDefault(key, null);
+    }
+
+    public V getOrDefault(long key, V defaultValue) {
+        int i = bucketOf(key);
+        return i == -1 ? defaultValue : valueTable[i];
+    }
+
+    // Removes a key from the map and returns the value.
+    // NOTE: returns null if the value is null AND also returns
+    // null if the key does not exist
+    public V remove(long key) {
+        int i = bucketOf(key);
+        if (i == -1) {
+            return null;
+        }
+        V oldValue = valueTable[i];
+        keyTable[i] = TOMBSTONE;
+        valueTable[i] = null;
+        keyCount--;
+        modificationCount++;
+        return oldValue;
+    }
+
+    // Returns the keys found in the hash table
+    public long[] keys() {
+        long[] keys = new long[keyCount];
+        for (int i = 0, n = 0; i < capacity; i++) {
+            long k = keyTable[i];
+            if (k != EMPTY_KEY && k != TOMBSTONE) {
+                keys[n++] = k;
+            }
+        }
+        return keys;
+    }
+
+    // Returns the non-unique values found in the hash table
+    public java.util.List<V> values() {
+        java.util.List<V> values = new java.util.ArrayList<>(keyCount);
+        for (int i = 0; i < capacity; i++) {
+            long k = keyTable[i];
+            if (k != EMPTY_KEY && k != TOMBSTONE) {
+                values.add(valueTable[i]);
+            }
+        }
+        return values;
+    }
+
+    // Rebuilds the table once the used buckets reach the threshold. When most
+    // of the used buckets are tombstones the live keys are rehashed into a
+    // table of the same size, otherwise the capacity is doubled.
+    private void resizeTable() {
+        if (keyCount >= threshold / 2) {
+            if (capacity == MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("Hash-table is full");
+            }
+            capacity *= 2;
+        }
+        threshold = (int) (capacity * loadFactor);
+
+        long[] oldKeyTable = keyTable;
+        V[] oldValueTable = valueTable;
+        keyTable = newKeyTable(capacity);
+        valueTable = (V[]) new Object[capacity];
+        usedBuckets = keyCount;
+
+        // The keys are known to be unique, so we only need to find an empty bucket
+        final int mask = capacity - 1;
+        for (int b = 0; b < oldKeyTable.length; b++) {
+            long k = oldKeyTable[b];
+            if (k == EMPTY_KEY || k == TOMBSTONE) {
+                continue;
+            }
+            int i = hash(k) & mask;
+            for (int x = 1; keyTable[i] != EMPTY_KEY; i = (i + x++) & mask);
+            keyTable[i] = k;
+            valueTable[i] = oldValueTable[b];
+        }
+    }
+
+    // Iterates over the keys without boxing them
+    public java.util.PrimitiveIterator.OfLong iterator() {
+        // Before the iteration begins record the number of modifications
+        // done to the hash-table. This value should not change as we iterate
+        // otherwise a concurrent modification has occurred
+        final int MODIFICATION_COUNT = modificationCount;
+
+        return new java.util.PrimitiveIterator.OfLong() {
+            int keysLeft = keyCount;
+            int index = 0;
+
+            @Override public boolean hasNext() {
+                // The contents of the table have been altered
+                if (MODIFICATION_COUNT != modificationCount) {
+                    throw new java.util.ConcurrentModificationException();
+                }
+                return keysLeft != 0;
+            }
+
+            // Find the next element and return it
+            @Override public long nextLong() {
+                if (!hasNext()) throw new java.util.NoSuchElementException();
+                while (keyTable[index] == EMPTY_KEY || keyTable[index] == TOMBSTONE) {
+                    index++;
+                }
+                keysLeft--;
+                return keyTable[index++];
+            }
+        };
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        for (int i = 0; i < capacity; i++) {
+            long k = keyTable[i];
+            if (k != EMPTY_KEY && k != TOMBSTONE) {
+                sb.append(k).append(" => ").append(valueTable[i]).append(", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,490 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// A hash-table from primitive long keys to primitive long values that lives in
+// a memory mapped file instead of on the heap. It uses the same quadratic
+// probing scheme and interleaved layout as LongLongQuadraticProbingMap, so the
+// GC never sees the entries and reopening the file with open() only reads a
+// small header: the buckets are used exactly as they were written, without
+// rehashing. The operating system pages the table in on demand.
+//
+// File layout (little endian): a HEADER_BYTES header followed by 'capacity'
+// buckets of 16 bytes, the key and then the value. Keys are stored XORed with
+// EMPTY_KEY so that the empty key is stored as 0 and a freshly created,
+// zero filled (and sparse) file is an empty table.
+//
+// Writes go to the page cache right away but only reach the disk for sure
+// after force() or close(). A table is not safe to use from multiple threads
+// or to open more than once at a time.
+public class MappedLongLongQuadraticProbingMap implements java.io.Closeable {
+    // Reserved keys marking empty and deleted buckets, these two
+    // keys cannot be stored in the map
+    public static final long EMPTY_KEY = Long.MIN_VALUE;
+    public static final long TOMBSTONE = Long.MIN_VALUE + 1;
+
+    private static final long MAGIC = 0x514D41504C4C3031L; // "QMAPLL01"
+    private static final int HEADER_BYTES = 64;
+    private static final int BUCKET_BYTES = 16;
+
+    // Header field offsets
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int KEY_COUNT_OFFSET = 12;
+    private static final int USED_BUCKETS_OFFSET = 16;
+    private static final int LOAD_FACTOR_OFFSET = 24;
+    private static final int NO_ENTRY_VALUE_OFFSET = 32;
+
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final double DEFAULT_LOAD_FACTOR = 0.5;
+
+    // A single mapping is limited to 2GB
+    private static final int MAXIMUM_CAPACITY = 1 << 26;
+
+    private final Path file;
+    private final double loadFactor;
+    private final long noEntryValue;
+    private int capacity;
+    private int threshold;
+    private int modificationCount = 0;
+
+    // 'usedBuckets' counts the total number of used buckets inside the
+    // hash-table (includes cells marked as deleted). 'keyCount' tracks
+    // the number of unique keys currently inside the hash-table. Both
+    // are mirrored in the header of the file
+    private int usedBuckets;
+    private int keyCount;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    private MappedLongLongQuadraticProbingMap(Path file, FileChannel channel, int capacity, double loadFactor, long noEntryValue) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.capacity = capacity;
+        this.loadFactor = loadFactor;
+        this.noEntryValue = noEntryValue;
+        threshold = (int) (capacity * loadFactor);
+        buffer = map(channel, capacity);
+    }
+
+    // Creates a new table in the given file, replacing whatever the file held
+    public static MappedLongLongQuadraticProbingMap create(Path file) throws IOException {
+        return create(file, DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR, 0L);
+    }
+
+    // 'capacity' is the number of keys the table should hold before it first
+    // has to grow, growing rewrites the whole file
+    public static MappedLongLongQuadraticProbingMap create(Path file, int capacity) throws IOException {
+        return create(file, capacity, DEFAULT_LOAD_FACTOR, 0L);
+    }
+
+    // 'noEntryValue' is what get/put/remove return when a key is not in the map
+    public static MappedLongLongQuadraticProbingMap create(Path file, int capacity, double loadFactor, long noEntryValue) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        if (!isValidLoadFactor(loadFactor)) {
+            throw new IllegalArgumentException("Illegal loadFactor: " + loadFactor);
+        }
+
+        int buckets = DEFAULT_CAPACITY;
+        while ((int) (buckets * loadFactor) <= capacity && buckets < MAXIMUM_CAPACITY) {
+            buckets *= 2;
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedLongLongQuadraticProbingMap map;
+        try {
+            map = new MappedLongLongQuadraticProbingMap(file, channel, buckets, loadFactor, noEntryValue);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        map.writeHeader();
+        return map;
+    }
+
+    // Reopens a table written by a previous create(), the buckets are
+    // mapped as they are so this takes the same time for any size
+    public static MappedLongLongQuadraticProbingMap open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a hash-table file: " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getLong(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException("Not a hash-table file: " + file);
+            }
+            int capacity = header.getInt(CAPACITY_OFFSET);
+            if (Integer.bitCount(capacity) != 1 || capacity > MAXIMUM_CAPACITY
+                    || channel.size() < HEADER_BYTES + (long) capacity * BUCKET_BYTES) {
+                throw new IOException("Corrupt hash-table file: " + file);
+            }
+            // A bad load factor or a full table would make probes loop forever
+            double loadFactor = header.getDouble(LOAD_FACTOR_OFFSET);
+            int keyCount = header.getInt(KEY_COUNT_OFFSET);
+            int usedBuckets = header.getInt(USED_BUCKETS_OFFSET);
+            if (!isValidLoadFactor(loadFactor) || keyCount < 0 || usedBuckets >= capacity || keyCount > usedBuckets) {
+                throw new IOException("Corrupt hash-table file: " + file);
+            }
+            MappedLongLongQuadraticProbingMap map = new MappedLongLongQuadraticProbingMap(file, channel, capacity,
+                loadFactor, header.getLong(NO_ENTRY_VALUE_OFFSET));
+            map.keyCount = keyCount;
+            map.usedBuckets = usedBuckets;
+            return map;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Open addressing always needs a free bucket to terminate a probe
+    private static boolean isValidLoadFactor(double loadFactor) {
+        return loadFactor > 0 && loadFactor < 1;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, int capacity) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * BUCKET_BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private void writeHeader() {
+        buffer.putLong(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putDouble(LOAD_FACTOR_OFFSET, loadFactor);
+        buffer.putLong(NO_ENTRY_VALUE_OFFSET, noEntryValue);
+        writeCounts();
+    }
+
+    private void writeCounts() {
+        buffer.putInt(KEY_COUNT_OFFSET, keyCount);
+        buffer.putInt(USED_BUCKETS_OFFSET, usedBuckets);
+    }
+
+    // Same hash as LongLongQuadraticProbingMap, so both place a key in the
+    // same bucket for the same capacity
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void keyNotReservedOrThrow(long key) {
+        if (key == EMPTY_KEY || key == TOMBSTONE) {
+            throw new IllegalArgumentException("Reserved key: " + key);
+        }
+    }
+
+    private void openOrThrow() {
+        if (buffer == null) {
+            throw new IllegalStateException("Hash-table is closed");
+        }
+    }
+
+    // Bucket accessors, translating between stored and actual keys
+    private long keyAt(int i) {
+        return buffer.getLong(HEADER_BYTES + i * BUCKET_BYTES) ^ EMPTY_KEY;
+    }
+
+    private void setKey(int i, long key) {
+        buffer.putLong(HEADER_BYTES + i * BUCKET_BYTES, key ^ EMPTY_KEY);
+    }
+
+    private long valueAt(int i) {
+        return buffer.getLong(HEADER_BYTES + i * BUCKET_BYTES + 8);
+    }
+
+    private void setValue(int i, long value) {
+        buffer.putLong(HEADER_BYTES + i * BUCKET_BYTES + 8, value);
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    // Clears all the contents of the hash-table
+    public void clear() {
+        openOrThrow();
+        for (int i = 0; i < capacity; i++) {
+            setKey(i, EMPTY_KEY);
+        }
+        keyCount = 0;
+        usedBuckets = 0;
+        writeCounts();
+        modificationCount++;
+    }
+
+    // Returns the number of keys currently inside the hash-table
+    public int size() {
+        return keyCount;
+    }
+
+    // Returns true/false depending on whether the hash-table is empty
+    public boolean isEmpty() {
+        return keyCount == 0;
+    }
+
+    // Insert, put and add all place a value in the hash-table
+    public long put(long key, long value) throws IOException {
+        return insert(key, value);
+    }
+
+    public long add(long key, long value) throws IOException {
+        return insert(key, value);
+    }
+
+    // Place a key-value pair into the hash-table. If the key already exists
+    // its value is updated and the previous value is returned, otherwise
+    // the no entry value is returned. Throws if growing the file fails
+    public long insert(long key, long val) throws IOException {
+        keyNotReservedOrThrow(key);
+        openOrThrow();
+        if (usedBuckets >= threshold) {
+            resizeTable();
+        }
+
+        final int mask = capacity - 1;
+        int i = hash(key) & mask;
+        int j = -1;
+
+        // Probing i = hash + P(x) with P(x) = (x^2+x)/2, computed incrementally
+        for (int x = 1; ; i = (i + x++) & mask) {
+            long k = keyAt(i);
+
+            // The current slot was previously deleted, remember the first one
+            if (k == TOMBSTONE) {
+                if (j == -1) {
+                    j = i;
+                }
+            // Current cell is empty so the key is not in the table
+            } else if (k == EMPTY_KEY) {
+                if (j == -1) {
+                    usedBuckets++;
+                    j = i;
+                }
+                setKey(j, key);
+                setValue(j, val);
+                keyCount++;
+                writeCounts();
+                modificationCount++;
+                return noEntryValue;
+            // The key exists, update its value and move it into the
+            // first deleted bucket we passed, if any
+            } else if (k == key) {
+                long oldValue = valueAt(i);
+                if (j != -1) {
+                    setKey(i, TOMBSTONE);
+                    i = j;
+                    setKey(i, key);
+                }
+                setValue(i, val);
+                modificationCount++;
+                return oldValue;
+            }
+        }
+    }
+
+    // Returns the bucket containing the key or -1 if it is not in the table
+    private int bucketOf(long key) {
+        keyNotReservedOrThrow(key);
+        openOrThrow();
+        final int mask = capacity - 1;
+        int i = hash(key) & mask;
+        for (int x = 1; ; i = (i + x++) & mask) {
+            long k = keyAt(i);
+            if (k == key) {
+                return i;
+            }
+            if (k == EMPTY_KEY) {
+                return -1;
+            }
+        }
+    }
+
+    // Returns true/false on whether a given key exists within the hash-table
+    public boolean containsKey(long key) {
+        return bucketOf(key) != -1;
+    }
+
+    public boolean hasKey(long key) {
+        return containsKey(key);
+    }
+
+    // Get the value associated with the input key.
+    // NOTE: returns the no entry value if the key does not exist
+    public long get(long key) {
+        return getOrDefault(key, noEntryValue);
+    }
+
+    public long getOrDefault(long key, long defaultValue) {
+        int i = bucketOf(key);
+        return i == -1 ? defaultValue : valueAt(i);
+    }
+
+    // Removes a key from the map and returns the value.
+    // NOTE: returns the no entry value if the key does not exist
+    public long remove(long key) {
+        int i = bucketOf(key);
+        if (i == -1) {
+            return noEntryValue;
+        }
+        long oldValue = valueAt(i);
+        setKey(i, TOMBSTONE);
+        setValue(i, noEntryValue);
+        keyCount--;
+        writeCounts();
+        modificationCount++;
+        return oldValue;
+    }
+
+    // Returns the keys found in the hash table
+    public long[] keys() {
+        openOrThrow();
+        long[] keys = new long[keyCount];
+        for (int i = 0, n = 0; i < capacity; i++) {
+            long k = keyAt(i);
+            if (k != EMPTY_KEY && k != TOMBSTONE) {
+                keys[n++] = k;
+            }
+        }
+        return keys;
+    }
+
+    // Returns the non-unique values found in the hash table
+    public long[] values() {
+        openOrThrow();
+        long[] values = new long[keyCount];
+        for (int i = 0, n = 0; i < capacity; i++) {
+            long k = keyAt(i);
+            if (k != EMPTY_KEY && k != TOMBSTONE) {
+                values[n++] = valueAt(i);
+            }
+        }
+        return values;
+    }
+
+    // Rebuilds the table once the used buckets reach the threshold. When most
+    // of the used buckets are tombstones the live keys are rehashed into a
+    // table of the same size, otherwise the capacity is doubled. The new
+    // table is written to a file next to this one which then replaces it, so
+    // the file always holds either the old or the new table
+    private void resizeTable() throws IOException {
+        int newCapacity = capacity;
+        if (keyCount >= threshold / 2) {
+            if (capacity == MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("Hash-table is full");
+            }
+            newCapacity *= 2;
+        }
+
+        Path resized = file.resolveSibling(file.getFileName() + ".resize");
+        FileChannel resizedChannel = FileChannel.open(resized, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedLongLongQuadraticProbingMap table;
+        try {
+            table = new MappedLongLongQuadraticProbingMap(resized, resizedChannel, newCapacity, loadFactor, noEntryValue);
+
+            // The keys are known to be unique, so we only need to find an empty bucket
+            final int mask = newCapacity - 1;
+            for (int b = 0; b < capacity; b++) {
+                long k = keyAt(b);
+                if (k == EMPTY_KEY || k == TOMBSTONE) {
+                    continue;
+                }
+                int i = hash(k) & mask;
+                for (int x = 1; table.keyAt(i) != EMPTY_KEY; i = (i + x++) & mask);
+                table.setKey(i, k);
+                table.setValue(i, valueAt(b));
+            }
+            table.keyCount = table.usedBuckets = keyCount;
+            table.writeHeader();
+            table.buffer.force();
+
+            Files.move(resized, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // The old table is untouched, only the half written copy is dropped
+            resizedChannel.close();
+            Files.deleteIfExists(resized);
+            throw e;
+        }
+        channel.close();
+        channel = table.channel;
+        buffer = table.buffer;
+        capacity = newCapacity;
+        threshold = table.threshold;
+        usedBuckets = keyCount;
+    }
+
+    // Writes all the changes made so far to the disk
+    public void force() {
+        openOrThrow();
+        buffer.force();
+    }
+
+    // Forces the changes to the disk and releases the file. The mapping itself
+    // is released by the GC once the buffer is unreachable
+    @Override public void close() throws IOException {
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+            channel.close();
+        }
+    }
+
+    // Iterates over the keys without boxing them
+    public java.util.PrimitiveIterator.OfLong iterator() {
+        openOrThrow();
+        // Before the iteration begins record the number of modifications
+        // done to the hash-table. This value should not change as we iterate
+        // otherwise a concurrent modification has occurred
+        final int MODIFICATION_COUNT = modificationCount;
+
+        return new java.util.PrimitiveIterator.OfLong() {
+            int keysLeft = keyCount;
+            int index = 0;
+
+            @Override public boolean hasNext() {
+                // The contents of the table have been altered
+                if (MODIFICATION_COUNT != modificationCount) {
+                    throw new java.util.ConcurrentModificationException();
+                }
+                return keysLeft != 0;
+            }
+
+            // Find the next element and return it
+            @Override public long nextLong() {
+                if (!hasNext()) throw new java.util.NoSuchElementException();
+                while (keyAt(index) == EMPTY_KEY || keyAt(index) == TOMBSTONE) {
+                    index++;
+                }
+                keysLeft--;
+                return keyAt(index++);
+            }
+        };
+    }
+
+    @Override public String toString() {
+        if (buffer == null) {
+            return "{closed}";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        for (int i = 0; i < capacity; i++) {
+            long k = keyAt(i);
+            if (k != EMPTY_KEY && k != TOMBSTONE) {
+                sb.append(k).append(" => ").append(valueAt(i)).append(", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
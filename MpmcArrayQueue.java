@@ -0,0 +1,207 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// A bounded lock-free queue for any number of producer and consumer threads,
+// after Dmitry Vyukov's bounded MPMC queue. Every slot of the ring buffer has
+// a sequence number telling whose turn it is: a slot whose sequence equals the
+// tail is free for the producer claiming that tail, and one whose sequence is
+// one past the head holds the element for the consumer claiming that head.
+// Producers and consumers claim a position with a compare-and-set on the tail
+// or head, fill or empty the slot, and then pass it on by bumping its sequence.
+// Producers never touch the head and consumers never touch the tail, so the
+// two sides only meet on the slots themselves.
+//
+// The capacity is rounded up to a power of two (at least 2). As with
+// SpscArrayQueue, poll and peek return null when the queue is empty and null
+// elements are not allowed. A poll can also return null while a producer has
+// claimed the front slot but not written it yet.
+@SuppressWarnings("unchecked")
+public class MpmcArrayQueue<T> {
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    // An index padded so that it does not share a cache
+    // line with whatever is allocated after it
+    private static final class PaddedIndex extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final PaddedIndex head = new PaddedIndex();
+    private final PaddedIndex tail = new PaddedIndex();
+
+    public MpmcArrayQueue(int capacity) {
+        if (capacity <= 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        int length = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        buffer = new Object[length];
+        sequences = new AtomicLongArray(length);
+        for (int i = 0; i < length; i++) {
+            sequences.set(i, i);
+        }
+        mask = length - 1;
+    }
+
+    // Returns the most elements the queue holds
+    public int capacity() {
+        return buffer.length;
+    }
+
+    // Returns the number of claimed slots, which may be stale by
+    // the time the caller looks at it
+    public int size() {
+        long h = head.get();
+        while (true) {
+            long t = tail.get();
+            long current = head.get();
+            if (current == h) {
+                return (int) (t - h);
+            }
+            h = current;
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Adds an element to the back of the queue, returns false if it is full
+    public boolean offer(T elem) {
+        if (elem == null) throw new IllegalArgumentException("Null element");
+        long t = tail.get();
+        while (true) {
+            int index = (int) t & mask;
+            long diff = sequences.get(index) - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    buffer[index] = elem;
+                    sequences.lazySet(index, t + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // The slot still holds the element from the previous lap
+                return false;
+            }
+            t = tail.get();
+        }
+    }
+
+    // Removes the element at the front of the queue, returns null if it is empty
+    public T poll() {
+        long h = head.get();
+        while (true) {
+            int index = (int) h & mask;
+            long diff = sequences.get(index) - (h + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(h, h + 1)) {
+                    T elem = (T) buffer[index];
+                    buffer[index] = null;
+                    sequences.lazySet(index, h + mask + 1);
+                    return elem;
+                }
+            } else if (diff < 0) {
+                // The slot was not written yet in this lap
+                return null;
+            }
+            h = head.get();
+        }
+    }
+
+    // Returns the element at the front of the queue without
+    // removing it, or null if it is empty
+    public T peek() {
+        while (true) {
+            long h = head.get();
+            int index = (int) h & mask;
+            if (sequences.get(index) - (h + 1) < 0) {
+                return null;
+            }
+            T elem = (T) buffer[index];
+            // If the head did not move the element was not polled in between
+            if (elem != null && head.get() == h) {
+                return elem;
+            }
+        }
+    }
+
+    // Polls up to 'max' elements and hands them to the consumer, returns how
+    // many it polled. Runs of ready slots are claimed with a single
+    // compare-and-set. The consumer is called while later slots of the run are
+    // still claimed, so it must not throw or they are never released
+    public int drain(Consumer<? super T> consumer, int max) {
+        if (max < 0) throw new IllegalArgumentException("Illegal max: " + max);
+        int drained = 0;
+        while (drained < max) {
+            long h = head.get();
+            int limit = Math.min(max - drained, buffer.length);
+            int run = 0;
+            while (run < limit && sequences.get((int) (h + run) & mask) == h + run + 1) {
+                run++;
+            }
+            if (run == 0) {
+                if (sequences.get((int) h & mask) - (h + 1) < 0) {
+                    break; // empty
+                }
+                continue; // another consumer moved the head
+            }
+            // No slot of the run can change hands while the head is still 'h'
+            if (!head.compareAndSet(h, h + run)) {
+                continue;
+            }
+            for (int i = 0; i < run; i++) {
+                int index = (int) (h + i) & mask;
+                T elem = (T) buffer[index];
+                buffer[index] = null;
+                sequences.lazySet(index, h + i + mask + 1);
+                consumer.accept(elem);
+            }
+            drained += run;
+        }
+        return drained;
+    }
+
+    // Offers up to 'max' elements taken from the supplier, returns how many
+    // it added. Runs of free slots are claimed with a single compare-and-set
+    // and the supplier is only called for claimed slots, so it must not throw
+    // or return null or the claimed slots are never published
+    public int fill(Supplier<? extends T> supplier, int max) {
+        if (max < 0) throw new IllegalArgumentException("Illegal max: " + max);
+        int filled = 0;
+        while (filled < max) {
+            long t = tail.get();
+            int limit = Math.min(max - filled, buffer.length);
+            int run = 0;
+            while (run < limit && sequences.get((int) (t + run) & mask) == t + run) {
+                run++;
+            }
+            if (run == 0) {
+                if (sequences.get((int) t & mask) - t < 0) {
+                    break; // full
+                }
+                continue; // another producer moved the tail
+            }
+            // No slot of the run can change hands while the tail is still 't'
+            if (!tail.compareAndSet(t, t + run)) {
+                continue;
+            }
+            for (int i = 0; i < run; i++) {
+                int index = (int) (t + i) & mask;
+                buffer[index] = supplier.get();
+                sequences.lazySet(index, t + i + 1);
+            }
+            filled += run;
+        }
+        return filled;
+    }
+
+    @Override public String toString() {
+        return "MpmcArrayQueue{size=" + size() + ", capacity=" + buffer.length + "}";
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// A bounded lock-free queue for exactly one producer thread and one consumer
+// thread. It is a ring buffer like ArrayQueue, but 'tail' is only written by
+// the producer and 'head' only by the consumer, so neither needs a lock or a
+// compare-and-set: an element is published by storing it and then lazily
+// setting the index past it, which the other thread reads before the element.
+//
+// Each thread also keeps a cached copy of the other thread's index and only
+// reads the real one when the cached copy says the queue is full (producer) or
+// empty (consumer), so in the common case the two threads do not touch each
+// other's cache lines at all. The indices are padded for the same reason.
+//
+// Unlike Queue, poll and peek return null when the queue is empty since with
+// another thread around the emptiness check and the poll could not be made
+// atomic anyway. Null elements are not allowed.
+@SuppressWarnings("unchecked")
+public class SpscArrayQueue<T> {
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    // An index padded so that it does not share a cache line with whatever is
+    // allocated after it. 'cached' is the owning thread's copy of the other
+    // index, which only that thread touches
+    private static final class Index extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+
+        long cached;
+        long p1, p2, p3, p4, p5, p6;
+    }
+
+    private final Object[] buffer;
+    private final int mask;
+    private final int capacity;
+
+    private final Index head = new Index(); // written by the consumer only
+    private final Index tail = new Index(); // written by the producer only
+
+    public SpscArrayQueue(int capacity) {
+        if (capacity <= 0 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        int length = Integer.highestOneBit(capacity - 1) << 1;
+        buffer = new Object[Math.max(1, length)];
+        mask = buffer.length - 1;
+        this.capacity = capacity;
+    }
+
+    // Returns the most elements the queue holds
+    public int capacity() {
+        return capacity;
+    }
+
+    // Returns the number of elements, which may be stale by the time
+    // the caller looks at it if the other thread is active
+    public int size() {
+        // Retry until the head did not move while the tail was read,
+        // so the two make up a consistent snapshot
+        long h = head.get();
+        while (true) {
+            long t = tail.get();
+            long current = head.get();
+            if (current == h) {
+                return (int) (t - h);
+            }
+            h = current;
+        }
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    // Adds an element to the back of the queue, returns false if it is full.
+    // Must only be called by the producer thread
+    public boolean offer(T elem) {
+        if (elem == null) throw new IllegalArgumentException("Null element");
+        long t = tail.get();
+        if (t - tail.cached >= capacity) {
+            tail.cached = head.get();
+            if (t - tail.cached >= capacity) {
+                return false;
+            }
+        }
+        buffer[(int) t & mask] = elem;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    // Removes the element at the front of the queue, returns null if it
+    // is empty. Must only be called by the consumer thread
+    public T poll() {
+        long h = head.get();
+        if (h == head.cached) {
+            head.cached = tail.get();
+            if (h == head.cached) {
+                return null;
+            }
+        }
+        int index = (int) h & mask;
+        T elem = (T) buffer[index];
+        buffer[index] = null;
+        head.lazySet(h + 1);
+        return elem;
+    }
+
+    // Returns the element at the front of the queue without removing it, or
+    // null if it is empty. Must only be called by the consumer thread
+    public T peek() {
+        long h = head.get();
+        if (h == head.cached) {
+            head.cached = tail.get();
+            if (h == head.cached) {
+                return null;
+            }
+        }
+        return (T) buffer[(int) h & mask];
+    }
+
+    // Polls up to 'max' elements and hands them to the consumer, returns how
+    // many it polled. The producer's index is only read once for the whole
+    // batch. Must only be called by the consumer thread
+    public int drain(Consumer<? super T> consumer, int max) {
+        if (max < 0) throw new IllegalArgumentException("Illegal max: " + max);
+        long h = head.get();
+        head.cached = tail.get();
+        int count = (int) Math.min(head.cached - h, max);
+        for (int i = 0; i < count; i++) {
+            int index = (int) (h + i) & mask;
+            T elem = (T) buffer[index];
+            buffer[index] = null;
+            // The slot is released before the consumer runs so that
+            // an exception in it does not lose the queue's state
+            head.lazySet(h + i + 1);
+            consumer.accept(elem);
+        }
+        return count;
+    }
+
+    // Offers up to 'max' elements taken from the supplier, returns how many
+    // it added. The supplier is only called for elements that fit. Must only
+    // be called by the producer thread
+    public int fill(Supplier<? extends T> supplier, int max) {
+        if (max < 0) throw new IllegalArgumentException("Illegal max: " + max);
+        long t = tail.get();
+        tail.cached = head.get();
+        int count = (int) Math.min(capacity - (t - tail.cached), max);
+        for (int i = 0; i < count; i++) {
+            T elem = supplier.get();
+            if (elem == null) throw new IllegalArgumentException("Null element");
+            buffer[(int) (t + i) & mask] = elem;
+            tail.lazySet(t + i + 1);
+        }
+        return count;
+    }
+
+    @Override public String toString() {
+        return "SpscArrayQueue{size=" + size() + ", capacity=" + capacity + "}";
+    }
+}
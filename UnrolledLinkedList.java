@@ -0,0 +1,398 @@
+// A doubly linked list whose nodes hold a small array of elements instead of a
+// single one, see DoublyLinkedList. A scan reads a whole chunk of consecutive
+// references per node it follows, and the per element overhead of the node
+// headers and links is divided by the chunk size.
+//
+// The elements of a node are kept contiguous in elems[start, start + count).
+// Adding at either end fills the free room on that side of the end node, which
+// is made by sliding its elements over once the side is used up, and only a
+// full end node gets a new neighbour, so the end operations are O(1). Inserting
+// into the middle of a full node splits it in two halves, and removing from the
+// middle of a node merges it with a neighbour once they fit in one node, so
+// the nodes stay reasonably full. Indexed access skips whole nodes from
+// whichever end is closer.
+@SuppressWarnings("unchecked")
+public class UnrolledLinkedList<T> implements Iterable<T> {
+    private static final int DEFAULT_CHUNK_SIZE = 64;
+
+    private final int chunkSize;
+    private int size = 0;
+    private int modificationCount = 0;
+    private Node<T> head = null;
+    private Node<T> tail = null;
+
+    // The offset within the node returned by the last call to nodeAt
+    private int offsetInNode;
+
+    // Internal node class holding a chunk of the elements
+    private static class Node<T> {
+        final Object[] elems;
+        int start, count;
+        Node<T> prev, next;
+
+        Node(int chunkSize, int start) {
+            this.elems = new Object[chunkSize];
+            this.start = start;
+        }
+
+        T get(int offset) {
+            return (T) elems[start + offset];
+        }
+    }
+
+    public UnrolledLinkedList() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public UnrolledLinkedList(int chunkSize) {
+        if (chunkSize < 2) throw new IllegalArgumentException("Illegal chunkSize: " + chunkSize);
+        this.chunkSize = chunkSize;
+    }
+
+    // Empty this linked list, O(1)
+    public void clear() {
+        head = tail = null;
+        size = 0;
+        modificationCount++;
+    }
+
+    // Return the size of this linked list
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Add an element to the tail of the linked list, O(1)
+    public void add(T elem) {
+        addLast(elem);
+    }
+
+    // Add an element to the beginning of this linked list, O(1)
+    public void addFirst(T elem) {
+        if (head == null || head.count == chunkSize) {
+            // Start the new node from its end so the next addFirst fits too
+            linkBefore(head, new Node<>(chunkSize, chunkSize));
+        } else if (head.start == 0) {
+            // Slide the elements to the end of the array
+            int newStart = chunkSize - head.count;
+            System.arraycopy(head.elems, 0, head.elems, newStart, head.count);
+            java.util.Arrays.fill(head.elems, 0, newStart, null);
+            head.start = newStart;
+        }
+        head.elems[--head.start] = elem;
+        head.count++;
+        size++;
+        modificationCount++;
+    }
+
+    // Add an element to the tail of the linked list, O(1)
+    public void addLast(T elem) {
+        if (tail == null || tail.count == chunkSize) {
+            linkAfter(tail, new Node<>(chunkSize, 0));
+        } else if (tail.start + tail.count == chunkSize) {
+            // Slide the elements to the start of the array
+            System.arraycopy(tail.elems, tail.start, tail.elems, 0, tail.count);
+            java.util.Arrays.fill(tail.elems, tail.count, chunkSize, null);
+            tail.start = 0;
+        }
+        tail.elems[tail.start + tail.count++] = elem;
+        size++;
+        modificationCount++;
+    }
+
+    // Insert an element so that it ends up at the given index, O(n / chunkSize + chunkSize)
+    public void add(int index, T elem) {
+        if (index < 0 || index > size) throw new IndexOutOfBoundsException();
+        if (index == size) {
+            addLast(elem);
+            return;
+        }
+        if (index == 0) {
+            addFirst(elem);
+            return;
+        }
+        Node<T> node = nodeAt(index);
+        int offset = offsetInNode;
+        if (node.count == chunkSize) {
+            // Move the upper half of the elements to a new node
+            int half = chunkSize / 2;
+            Node<T> upper = new Node<>(chunkSize, 0);
+            System.arraycopy(node.elems, node.start + half, upper.elems, 0, node.count - half);
+            java.util.Arrays.fill(node.elems, node.start + half, node.start + node.count, null);
+            upper.count = node.count - half;
+            node.count = half;
+            linkAfter(node, upper);
+            if (offset > half) {
+                node = upper;
+                offset -= half;
+            }
+        }
+        // Make room at 'offset' on the side of the node that has free space
+        if (node.start + node.count < chunkSize) {
+            int from = node.start + offset;
+            System.arraycopy(node.elems, from, node.elems, from + 1, node.count - offset);
+            node.elems[from] = elem;
+        } else {
+            System.arraycopy(node.elems, node.start, node.elems, node.start - 1, offset);
+            node.start--;
+            node.elems[node.start + offset] = elem;
+        }
+        node.count++;
+        size++;
+        modificationCount++;
+    }
+
+    // Returns the element at the given index, O(n / chunkSize)
+    public T get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException();
+        Node<T> node = nodeAt(index);
+        return node.get(offsetInNode);
+    }
+
+    // Replaces the element at the given index and returns the old one
+    public T set(int index, T elem) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException();
+        Node<T> node = nodeAt(index);
+        T old = node.get(offsetInNode);
+        node.elems[node.start + offsetInNode] = elem;
+        return old;
+    }
+
+    // Check the value of the first node if it exists, O(1)
+    public T peekFirst() {
+        if (isEmpty()) {
+            throw new RuntimeException("Empty list");
+        }
+        return head.get(0);
+    }
+
+    // Check the value of the last node if it exists, O(1)
+    public T peekLast() {
+        if (isEmpty()) {
+            throw new RuntimeException("Empty list");
+        }
+        return tail.get(tail.count - 1);
+    }
+
+    // Remove the first value at the head of the linked list, O(1)
+    public T removeFirst() {
+        // Can't remove data from an empty list
+        if (isEmpty()) throw new RuntimeException("Empty list");
+
+        T data = head.get(0);
+        head.elems[head.start++] = null;
+        if (--head.count == 0) {
+            unlink(head);
+        }
+        size--;
+        modificationCount++;
+        return data;
+    }
+
+    // Remove the last value at the tail of the linked list, O(1)
+    public T removeLast() {
+        // Can't remove data from an empty list
+        if (isEmpty()) throw new RuntimeException("Empty list");
+
+        T data = tail.get(tail.count - 1);
+        tail.elems[tail.start + --tail.count] = null;
+        if (tail.count == 0) {
+            unlink(tail);
+        }
+        size--;
+        modificationCount++;
+        return data;
+    }
+
+    // Remove the element at the given index, O(n / chunkSize + chunkSize)
+    public T removeAt(int index) {
+        // Make the index provided is valid
+        if (index < 0 || index >= size) throw new IllegalArgumentException();
+        Node<T> node = nodeAt(index);
+        return remove(node, offsetInNode);
+    }
+
+    // Remove a particular value in the linked list, O(n)
+    public boolean remove(Object obj) {
+        for (Node<T> node = head; node != null; node = node.next) {
+            int offset = find(node, obj);
+            if (offset != -1) {
+                remove(node, offset);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Removes the element at 'offset' of the node, closing the gap from
+    // whichever side has fewer elements to move
+    private T remove(Node<T> node, int offset) {
+        T data = node.get(offset);
+        int from = node.start + offset;
+        if (offset < node.count / 2) {
+            System.arraycopy(node.elems, node.start, node.elems, node.start + 1, offset);
+            node.elems[node.start++] = null;
+        } else {
+            System.arraycopy(node.elems, from + 1, node.elems, from, node.count - offset - 1);
+            node.elems[node.start + node.count - 1] = null;
+        }
+        node.count--;
+        size--;
+        modificationCount++;
+
+        if (node.count == 0) {
+            unlink(node);
+        } else if (node.count < chunkSize / 2) {
+            // Merge with a neighbour once both fit in a single node
+            if (node.next != null && node.count + node.next.count <= chunkSize) {
+                merge(node, node.next);
+            } else if (node.prev != null && node.prev.count + node.count <= chunkSize) {
+                merge(node.prev, node);
+            }
+        }
+        return data;
+    }
+
+    // Appends the elements of 'right' to 'left' and unlinks 'right'
+    private void merge(Node<T> left, Node<T> right) {
+        if (left.start + left.count + right.count > chunkSize) {
+            System.arraycopy(left.elems, left.start, left.elems, 0, left.count);
+            java.util.Arrays.fill(left.elems, left.count, chunkSize, null);
+            left.start = 0;
+        }
+        System.arraycopy(right.elems, right.start, left.elems, left.start + left.count, right.count);
+        left.count += right.count;
+        unlink(right);
+    }
+
+    // Find the index of a particular value in the linked list. O(n)
+    public int indexOf(Object obj) {
+        int index = 0;
+        for (Node<T> node = head; node != null; node = node.next) {
+            int offset = find(node, obj);
+            if (offset != -1) {
+                return index + offset;
+            }
+            index += node.count;
+        }
+        return -1;
+    }
+
+    // Check if a value is contained within the linked list
+    public boolean contains(Object obj) {
+        return indexOf(obj) != -1;
+    }
+
+    // Returns the offset of the first element of the node equal to 'obj', or -1
+    private static int find(Node<?> node, Object obj) {
+        Object[] elems = node.elems;
+        int end = node.start + node.count;
+        // Support searching for null
+        if (obj == null) {
+            for (int i = node.start; i < end; i++) {
+                if (elems[i] == null) return i - node.start;
+            }
+        } else {
+            for (int i = node.start; i < end; i++) {
+                if (obj.equals(elems[i])) return i - node.start;
+            }
+        }
+        return -1;
+    }
+
+    // Returns the node holding the element at 'index' and sets 'offsetInNode',
+    // skipping whole nodes from whichever end of the list is closer
+    private Node<T> nodeAt(int index) {
+        Node<T> node;
+        if (index < size / 2) {
+            node = head;
+            while (index >= node.count) {
+                index -= node.count;
+                node = node.next;
+            }
+        } else {
+            int fromEnd = size - 1 - index;
+            node = tail;
+            while (fromEnd >= node.count) {
+                fromEnd -= node.count;
+                node = node.prev;
+            }
+            index = node.count - 1 - fromEnd;
+        }
+        offsetInNode = index;
+        return node;
+    }
+
+    private void linkBefore(Node<T> successor, Node<T> node) {
+        node.next = successor;
+        if (successor == null) {
+            head = tail = node;
+            return;
+        }
+        node.prev = successor.prev;
+        if (successor.prev == null) head = node;
+        else successor.prev.next = node;
+        successor.prev = node;
+    }
+
+    private void linkAfter(Node<T> predecessor, Node<T> node) {
+        node.prev = predecessor;
+        if (predecessor == null) {
+            head = tail = node;
+            return;
+        }
+        node.next = predecessor.next;
+        if (predecessor.next == null) tail = node;
+        else predecessor.next.prev = node;
+        predecessor.next = node;
+    }
+
+    private void unlink(Node<T> node) {
+        if (node.prev == null) head = node.next;
+        else node.prev.next = node.next;
+        if (node.next == null) tail = node.prev;
+        else node.next.prev = node.prev;
+        node.prev = node.next = null;
+    }
+
+    @Override public java.util.Iterator<T> iterator() {
+        final int MODIFICATION_COUNT = modificationCount;
+
+        return new java.util.Iterator<T>() {
+            private Node<T> node = head;
+            private int offset = 0;
+
+            @Override public boolean hasNext() {
+                if (MODIFICATION_COUNT != modificationCount) {
+                    throw new java.util.ConcurrentModificationException();
+                }
+                return node != null;
+            }
+
+            @Override public T next() {
+                if (!hasNext()) throw new java.util.NoSuchElementException();
+                T data = node.get(offset);
+                if (++offset == node.count) {
+                    node = node.next;
+                    offset = 0;
+                }
+                return data;
+            }
+        };
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[ ");
+        for (Node<T> node = head; node != null; node = node.next) {
+            for (int i = 0; i < node.count; i++) {
+                sb.append(node.get(i) + ", ");
+            }
+        }
+        sb.append(" ]");
+        return sb.toString();
+    }
+}